@@ -0,0 +1,107 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using System.IO;
+
+namespace PeterO.Cbor {
+  // Write-only stream that writes directly into a portion of a byte
+  // array. Unlike a MemoryStream over that portion, writing past its end
+  // doesn't throw an exception; the bytes that don't fit are dropped and
+  // Overflowed becomes true, so that callers such as CBORObject.TryEncode
+  // can report a too-small portion without catching an exception.
+  internal sealed class ByteArrayOutputStream : Stream {
+    private readonly byte[] buffer;
+    private readonly int start;
+    private readonly int end;
+    private int pos;
+    private bool overflowed;
+
+    public ByteArrayOutputStream(byte[] buffer, int offset, int count) {
+      this.buffer = buffer;
+      this.start = offset;
+      this.pos = offset;
+      this.end = offset + count;
+    }
+
+    // Gets whether any bytes didn't fit in the portion
+    public bool Overflowed {
+      get {
+        return this.overflowed;
+      }
+    }
+
+    public override bool CanRead {
+      get {
+        return false;
+      }
+    }
+
+    public override bool CanSeek {
+      get {
+        return false;
+      }
+    }
+
+    public override bool CanWrite {
+      get {
+        return true;
+      }
+    }
+
+    // Gets the number of bytes written so far
+    public override long Length {
+      get {
+        return this.pos - this.start;
+      }
+    }
+
+    public override long Position {
+      get {
+        return this.pos - this.start;
+      }
+
+      set {
+        throw new NotSupportedException();
+      }
+    }
+
+    public override void WriteByte(byte value) {
+      if (this.pos < this.end) {
+        this.buffer[this.pos++] = value;
+      } else {
+        this.overflowed = true;
+      }
+    }
+
+    public override void Write(byte[] data, int offset, int count) {
+      if (this.overflowed || count > this.end - this.pos) {
+        this.overflowed = true;
+        return;
+      }
+      Array.Copy(data, offset, this.buffer, this.pos, count);
+      this.pos += count;
+    }
+
+    public override void Flush() {
+    }
+
+    public override int Read(byte[] data, int offset, int count) {
+      throw new NotSupportedException();
+    }
+
+    public override long Seek(long offset, SeekOrigin origin) {
+      throw new NotSupportedException();
+    }
+
+    public override void SetLength(long value) {
+      throw new NotSupportedException();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+
+namespace PeterO.Cbor {
+  // Value of a byte string that refers to a portion of the byte array
+  // it was decoded from (see CBOREncodeOptions.ShareByteStrings) rather
+  // than a copy of that portion
+  internal sealed class CBORByteStringSlice {
+    private readonly byte[] data;
+    private readonly int offset;
+    private readonly int count;
+    private readonly object syncRoot = new Object();
+    // Copy of the portion, made the first time a byte array holding
+    // only the byte string is needed
+    private volatile byte[] copy;
+
+    public CBORByteStringSlice(byte[] data, int offset, int count) {
+      this.data = data;
+      this.offset = offset;
+      this.count = count;
+    }
+
+    // Gets the portion of the byte array holding the byte string, or
+    // the whole copy if one was made, so that changes to the copy are
+    // seen from then on
+    public ArraySegment<byte> Segment {
+      get {
+        byte[] bytes = this.copy;
+        return (bytes != null) ? new ArraySegment<byte>(bytes) :
+          new ArraySegment<byte>(this.data, this.offset, this.count);
+      }
+    }
+
+    // Gets a byte array holding only the byte string, copying the
+    // portion the first time if it's not the whole byte array
+    public byte[] GetBytes() {
+      if (this.offset == 0 && this.count == this.data.Length) {
+        return this.data;
+      }
+      byte[] bytes = this.copy;
+      if (bytes != null) {
+        return bytes;
+      }
+      lock (this.syncRoot) {
+        if (this.copy == null) {
+          var newCopy = new byte[this.count];
+          Array.Copy(this.data, this.offset, newCopy, 0, this.count);
+          this.copy = newCopy;
+        }
+        return this.copy;
+      }
+    }
+  }
+}
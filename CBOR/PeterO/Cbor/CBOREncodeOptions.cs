@@ -4,6 +4,8 @@ namespace PeterO.Cbor {
   /// <summary>Specifies options for encoding and decoding CBOR
   /// objects.</summary>
   public sealed class CBOREncodeOptions {
+    private const int DefaultMaxNestingDepth = 500;
+
     /// <summary>Default options for CBOR objects. Disallow duplicate keys,
     /// and always encode strings using definite-length encoding.</summary>
     public static readonly CBOREncodeOptions Default =
@@ -55,6 +57,12 @@ public sealed class CBOREncodeOptions {
       this.ResolveReferences = false;
       this.AllowEmpty = false;
       this.Float64 = false;
+      this.Lazy = false;
+      this.ShareByteStrings = false;
+      this.InternStrings = false;
+      this.StringRefs = false;
+      this.KeepKeyOrder = false;
+      this.MaxNestingDepth = DefaultMaxNestingDepth;
       this.UseIndefLengthStrings = useIndefLengthStrings;
       this.AllowDuplicateKeys = allowDuplicateKeys;
       this.Ctap2Canonical = ctap2Canonical;
@@ -74,8 +82,10 @@ public sealed class CBOREncodeOptions {
     /// of basic upper-case and/or basic lower-case letters:
     /// <c>allowduplicatekeys</c>, <c>ctap2canonical</c>,
     /// <c>resolvereferences</c>, <c>useindeflengthstrings</c>,
-    /// <c>allowempty</c>, <c>float64</c>. Keys other than these are
-    /// ignored in this version of the CBOR library. The key <c>float64</c>
+    /// <c>allowempty</c>, <c>float64</c>, <c>lazy</c>,
+    /// <c>sharebytestrings</c>, <c>internstrings</c>, <c>stringrefs</c>,
+    /// <c>keepkeyorder</c>, <c>maxnestingdepth</c>. Keys other than
+    /// these are ignored in this version of the CBOR library. The key <c>float64</c>
     /// was introduced in version 4.4 of this library. (Keys are compared
     /// using a basic case-insensitive comparison, in which two strings are
     /// equal if they match after converting the basic upper-case letters A
@@ -89,9 +99,14 @@ public sealed class CBOREncodeOptions {
     /// false. For example, <c>allowduplicatekeys=Yes</c> and
     /// <c>allowduplicatekeys=1</c> both set the <c>AllowDuplicateKeys</c>
     /// property to true. In the future, this class may allow other keys to
-    /// store other kinds of values, not just true or false.</param>
+    /// store other kinds of values, not just true or false. The
+    /// exception is the key <c>maxnestingdepth</c>, whose value is a
+    /// nonnegative integer written in basic digits 0 to 9.</param>
     /// <exception cref='ArgumentNullException'>The parameter <paramref
     /// name='paramString'/> is null.</exception>
+    /// <exception cref='ArgumentException'>The value given for
+    /// <c>maxnestingdepth</c> is not a nonnegative integer that fits in a
+    /// 32-bit signed integer.</exception>
     public CBOREncodeOptions(string paramString) {
       if (paramString == null) {
         throw new ArgumentNullException(nameof(paramString));
@@ -109,6 +124,14 @@ public sealed class CBOREncodeOptions {
           false);
       this.AllowEmpty = parser.GetBoolean("allowempty", false);
       this.Ctap2Canonical = parser.GetBoolean("ctap2canonical", false);
+      this.Lazy = parser.GetBoolean("lazy", false);
+      this.ShareByteStrings = parser.GetBoolean("sharebytestrings", false);
+      this.InternStrings = parser.GetBoolean("internstrings", false);
+      this.StringRefs = parser.GetBoolean("stringrefs", false);
+      this.KeepKeyOrder = parser.GetBoolean("keepkeyorder", false);
+      this.MaxNestingDepth = parser.GetNonNegativeInt32(
+        "maxnestingdepth",
+        DefaultMaxNestingDepth);
     }
 
     /// <summary>Gets the values of this options object's properties in
@@ -128,6 +151,15 @@ public sealed class CBOREncodeOptions {
         .Append(";resolvereferences=")
         .Append(this.ResolveReferences ? "true" : "false")
         .Append(";allowempty=").Append(this.AllowEmpty ? "true" : "false")
+        .Append(";lazy=").Append(this.Lazy ? "true" : "false")
+        .Append(";sharebytestrings=")
+        .Append(this.ShareByteStrings ? "true" : "false")
+        .Append(";internstrings=")
+        .Append(this.InternStrings ? "true" : "false")
+        .Append(";stringrefs=").Append(this.StringRefs ? "true" : "false")
+        .Append(";keepkeyorder=")
+        .Append(this.KeepKeyOrder ? "true" : "false")
+        .Append(";maxnestingdepth=").Append(this.MaxNestingDepth)
         .ToString();
     }
 
@@ -242,6 +274,116 @@ public sealed class CBOREncodeOptions {
       private set;
     }
 
+    /// <summary>Gets a value indicating whether arrays and maps are
+    /// decoded lazily. If this property is <c>true</c>, an array or map
+    /// decoded from a byte array keeps only the portion of the byte array
+    /// it was encoded in, and its items are decoded the first time they
+    /// are accessed (for example, through an indexer, <c>Count</c>,
+    /// <c>Keys</c>, <c>Values</c>, or <c>Entries</c>). This way, the time
+    /// to decode a large CBOR object depends mostly on how much of it is
+    /// accessed. Used only when decoding CBOR objects from a byte array,
+    /// and ignored if the <c>ResolveReferences</c> property is
+    /// <c>true</c>.</summary>
+    /// <value>A value indicating whether arrays and maps are decoded
+    /// lazily. The default is false.</value>
+    /// <remarks>Because items of an array or map are checked only when
+    /// they are decoded, errors in them (such as invalid UTF-8 or
+    /// duplicate map keys) can cause a <c>CBORException</c> to be thrown
+    /// the first time the array or map is accessed rather than when the
+    /// enclosing CBOR object is decoded. The byte array should not be
+    /// changed while CBOR objects decoded from it might still be
+    /// accessed. Decoding still makes one pass over the whole encoded
+    /// CBOR object, noting where each array and map in it ends, so that
+    /// decoding an array or map later reads only its own items.</remarks>
+    public bool Lazy {
+      get;
+      private set;
+    }
+
+    /// <summary>Gets a value indicating whether byte strings decoded from
+    /// a byte array refer to the portion of that byte array they were
+    /// encoded in, rather than to a copy of that portion. This way, large
+    /// byte strings are not copied when a CBOR object is decoded; use
+    /// <see cref='PeterO.Cbor.CBORObject.GetByteStringSegment'/> to get
+    /// such a byte string's bytes without copying them. Used only when
+    /// decoding CBOR objects from a byte array; short byte strings may be
+    /// copied anyway.</summary>
+    /// <value>A value indicating whether byte strings refer to the byte
+    /// array they were decoded from. The default is false.</value>
+    /// <remarks>The byte array should not be changed while byte strings
+    /// decoded from it might still be accessed, since the changes would
+    /// show up in those byte strings.</remarks>
+    public bool ShareByteStrings {
+      get;
+      private set;
+    }
+
+    /// <summary>Gets a value indicating whether short text strings that
+    /// occur again and again while decoding, such as map keys repeated in
+    /// each item of a CBOR sequence, are decoded to the same CBOR object
+    /// each time rather than to a new one. Text strings are kept in a
+    /// table of limited size, which is shared by all the CBOR objects
+    /// decoded in a single call (such as to <c>ReadSequence</c> or
+    /// <c>DecodeSequenceFromBytes</c>) or by the same
+    /// <c>CBORIncrementalDecoder</c>. Each call to <c>Read</c> or
+    /// <c>DecodeFromBytes</c> has a table of its own; to share one table
+    /// among data items read one at a time from a stream, read them with
+    /// a <c>CBORSequenceReader</c>. Used only when decoding CBOR
+    /// objects.</summary>
+    /// <value>A value indicating whether short text strings are shared
+    /// among decoded CBOR objects. The default is false.</value>
+    public bool InternStrings {
+      get;
+      private set;
+    }
+
+    /// <summary>Gets a value indicating whether text and byte strings that
+    /// occur more than once in a CBOR object are written out only once
+    /// when encoding, using the "stringref" extension of CBOR (tags 256
+    /// and 25). The whole CBOR object is then tagged with tag 256, and
+    /// each later copy of a string already written is replaced with tag 25
+    /// and that string's index. A string is given an index only if a
+    /// reference to it is shorter than the string itself, following the
+    /// same rules used when decoding. To get the strings back, decode the
+    /// data with the <c>ResolveReferences</c> property set. Used only
+    /// when encoding CBOR objects; ignored if the <c>Ctap2Canonical</c>
+    /// property is set.</summary>
+    /// <value>A value indicating whether repeated strings are written as
+    /// string references. The default is false.</value>
+    public bool StringRefs {
+      get;
+      private set;
+    }
+
+    /// <summary>Gets the greatest number of arrays, maps, and tags that a
+    /// data item can be nested in when decoding a CBOR object. Decoding
+    /// fails with a CBORException if a data item is nested more deeply
+    /// than that. Arrays and maps are decoded without recursion, so a
+    /// high limit doesn't risk a stack overflow while decoding, but
+    /// deeply nested CBOR objects need a lot of stack space in other
+    /// operations, such as comparing, hashing, or encoding them.</summary>
+    /// <value>The maximum nesting depth. The default is 500.</value>
+    public int MaxNestingDepth {
+      get;
+      private set;
+    }
+
+    /// <summary>Gets a value indicating whether maps decoded from CBOR
+    /// keep their keys in the order they appear in the data, as maps
+    /// created with <c>CBORObject.NewOrderedMap</c> do. Such maps find
+    /// keys by their hash codes rather than by comparing them with other
+    /// keys, so looking up keys in them is generally faster, especially
+    /// in maps with many keys. When such a map is encoded, its keys are
+    /// written in the same order (unless the Ctap2Canonical property is
+    /// set).</summary>
+    /// <value>A value indicating whether decoded maps keep their keys in
+    /// the order they appear in the data. The default is false, meaning
+    /// that the keys of decoded maps are kept in sorted order.</value>
+    public bool KeepKeyOrder {
+      get;
+      private set;
+    }
+
     /// <summary>Gets a value indicating whether CBOR objects:
     /// <list>
     /// <item>When encoding, are written out using the CTAP2 canonical CBOR
@@ -0,0 +1,170 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+
+namespace PeterO.Cbor {
+  /// <summary>
+  /// <para>Decodes a sequence of CBOR objects from data that arrives in
+  /// pieces, such as packets received over a network, where a CBOR
+  /// object can be split across pieces at any point.</para>
+  /// <para>Pass each piece of data to Feed as it arrives, then call
+  /// TryGetNext until it returns false. The decoder keeps track of how
+  /// far it got in finding the end of a partially received CBOR object
+  /// (including the nesting of arrays, maps, and indefinite-length
+  /// strings, and how many bytes of a string are still to come), so each
+  /// byte is examined only once however the data is split. A CBOR object
+  /// is decoded once all its bytes have arrived.</para>
+  /// <para>This class is not thread safe.</para></summary>
+  public sealed class CBORIncrementalDecoder {
+    private readonly CBOREncodeOptions options;
+    private readonly CBORItemScanner scanner;
+    // Shared by all the CBOR objects this decoder decodes, or null
+    private readonly CBORInternTable internTable;
+    private byte[] buffer;
+    // Bytes fed but not yet returned as CBOR objects are from
+    // buffer[start] to buffer[end - 1]
+    private int start;
+    private int end;
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORIncrementalDecoder'/> class with the
+    /// default options.</summary>
+    public CBORIncrementalDecoder() : this(CBOREncodeOptions.Default) {
+    }
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORIncrementalDecoder'/> class.</summary>
+    /// <param name='options'>Specifies the options to use when decoding
+    /// CBOR objects. See CBOREncodeOptions for more information. The
+    /// AllowEmpty property is ignored.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='options'/> is null.</exception>
+    public CBORIncrementalDecoder(CBOREncodeOptions options) {
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      this.options = options;
+      this.scanner = new CBORItemScanner(options.MaxNestingDepth);
+      this.internTable = options.InternStrings ? new CBORInternTable() :
+        null;
+      this.buffer = new byte[64];
+    }
+
+    /// <summary>Gets the number of bytes fed to this decoder that weren't
+    /// yet returned as part of a CBOR object.</summary>
+    /// <value>The number of bytes fed but not yet decoded.</value>
+    public int BufferedCount {
+      get {
+        return this.end - this.start;
+      }
+    }
+
+    // Gets a number of bytes that must still be fed before the next CBOR
+    // object can be complete
+    internal long BytesNeeded {
+      get {
+        return this.scanner.BytesNeeded;
+      }
+    }
+
+    /// <summary>Adds data to the end of the data to decode.</summary>
+    /// <param name='data'>A byte array holding the data to add. The
+    /// decoder copies the data, so the array can be reused after this
+    /// method returns.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    public void Feed(byte[] data) {
+      if (data == null) {
+        throw new ArgumentNullException(nameof(data));
+      }
+      this.Feed(data, 0, data.Length);
+    }
+
+    /// <summary>Adds a portion of a byte array to the end of the data to
+    /// decode.</summary>
+    /// <param name='data'>A byte array holding the data to add. The
+    /// decoder copies the data, so the array can be reused after this
+    /// method returns.</param>
+    /// <param name='offset'>An index starting at 0 showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion
+    /// of <paramref name='data'/> (but not more than <paramref
+    /// name='data'/> 's length).</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public void Feed(byte[] data, int offset, int count) {
+      CBORObject.CheckByteArrayPortion(data, offset, count);
+      if (this.buffer.Length - this.end < count) {
+        int used = this.end - this.start;
+        if (this.buffer.Length - used < count) {
+          var newBuffer = new byte[Math.Max(
+              this.buffer.Length * 2,
+              used + count)];
+          Array.Copy(this.buffer, this.start, newBuffer, 0, used);
+          this.buffer = newBuffer;
+        } else {
+          // Move the bytes not yet decoded to the start of the buffer
+          Array.Copy(this.buffer, this.start, this.buffer, 0, used);
+        }
+        this.start = 0;
+        this.end = used;
+      }
+      Array.Copy(data, offset, this.buffer, this.end, count);
+      this.end += count;
+    }
+
+    /// <summary>Decodes the next CBOR object from the data fed so far, if
+    /// all its bytes have arrived.</summary>
+    /// <param name='obj'>Receives the CBOR object decoded, or null if
+    /// this method returns false.</param>
+    /// <returns><c>true</c> if a CBOR object was decoded; <c>false</c>
+    /// if more data is needed first.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>The next CBOR object
+    /// is invalid. Its bytes are discarded.</exception>
+    public bool TryGetNext(out CBORObject obj) {
+      long length = this.scanner.Scan(
+          this.buffer,
+          this.start,
+          this.end - this.start);
+      if (length < 0) {
+        obj = null;
+        return false;
+      }
+      int offset = this.start;
+      var count = (int)length;
+      this.start += count;
+      if (this.start == this.end) {
+        this.start = 0;
+        this.end = 0;
+      }
+      byte[] data = this.buffer;
+      if (this.options.Lazy || this.options.ShareByteStrings) {
+        // Lazily decoded objects and shared byte strings keep the bytes
+        // they were encoded in, so they can't refer to the reusable
+        // buffer
+        data = new byte[count];
+        Array.Copy(this.buffer, offset, data, 0, count);
+        offset = 0;
+      }
+      obj = CBORObject.DecodeFromBytes(
+          data,
+          offset,
+          count,
+          this.options,
+          this.internTable);
+      return true;
+    }
+  }
+}
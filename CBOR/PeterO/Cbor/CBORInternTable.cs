@@ -0,0 +1,75 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+
+namespace PeterO.Cbor {
+  // Bounded table of short text strings decoded so far (see
+  // CBOREncodeOptions.InternStrings), so that a text string that occurs
+  // many times, such as a map key, is decoded to the same CBOR object
+  // each time. Each slot holds the string last stored in it, so the table
+  // never holds more than a fixed number of strings. Safe to use from
+  // more than one thread, since entries are never changed once stored;
+  // at worst, a string stored by one thread replaces another's.
+  internal sealed class CBORInternTable {
+    // Longest text string, in UTF-8 bytes, to intern; no greater than
+    // the number of bytes CBORReader can make available at once
+    public const int MaxLength = 32;
+    private const int TableSize = 512;
+
+    private sealed class Entry {
+      public readonly byte[] Utf8;
+      public readonly CBORObject Value;
+
+      public Entry(byte[] utf8, CBORObject value) {
+        this.Utf8 = utf8;
+        this.Value = value;
+      }
+    }
+
+    private readonly Entry[] entries;
+
+    public CBORInternTable() {
+      this.entries = new Entry[TableSize];
+    }
+
+    // Gets a CBOR object for the text string encoded in the given portion
+    // of a byte array, which is no longer than MaxLength bytes
+    public CBORObject Intern(byte[] data, int offset, int length) {
+      var hash = 0;
+      unchecked {
+        for (var i = 0; i < length; ++i) {
+          hash = (hash * 31) + data[offset + i];
+        }
+        hash ^= hash >> 16;
+      }
+      int slot = hash & (TableSize - 1);
+      Entry entry = this.entries[slot];
+      if (entry != null && entry.Utf8.Length == length) {
+        byte[] utf8 = entry.Utf8;
+        var i = 0;
+        while (i < length && utf8[i] == data[offset + i]) {
+          ++i;
+        }
+        if (i == length) {
+          return entry.Value;
+        }
+      }
+      if (!CBORUtilities.CheckUtf8(data, offset, length)) {
+        throw new CBORException("Invalid UTF-8");
+      }
+      var bytes = new byte[length];
+      Array.Copy(data, offset, bytes, 0, length);
+      CBORObject value = (length == 0) ?
+        CBORObject.FromObject(String.Empty) : CBORObject.FromRawUtf8(bytes);
+      this.entries[slot] = new Entry(bytes, value);
+      return value;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+
+namespace PeterO.Cbor {
+  // Finds where a CBOR data item ends in data that may arrive in pieces,
+  // without decoding it. Only the heads of data items are examined;
+  // the data item is checked fully when it's decoded. If invalid data
+  // is encountered, the data item is treated as ending there, so that
+  // decoding it will fail.
+  internal sealed class CBORItemScanner {
+    // Nesting limit beyond which decoding fails anyway
+    private readonly int maxDepth;
+
+    // For each open array, map, or indefinite-length string: the number
+    // of data items left in it, or -1 if it has indefinite length
+    private long[] stackRemaining;
+    private int stackSize;
+    // Number of bytes of the data item scanned so far
+    private long scanned;
+    // Number of bytes of string data left to skip
+    private long skip;
+    // Number of bytes the head at the current position needs, or 0
+    // if not known yet
+    private int headLength;
+    private bool started;
+    private bool afterTag;
+
+    public CBORItemScanner(int maxDepth) {
+      this.maxDepth = maxDepth;
+      this.stackRemaining = new long[8];
+    }
+
+    // Gets the number of bytes of the data item scanned so far
+    public long Scanned {
+      get {
+        return this.scanned;
+      }
+    }
+
+    // Gets a number of bytes that must still arrive before the data item
+    // can be complete; never reading more than this at a time avoids
+    // reading past the end of the data item
+    public long BytesNeeded {
+      get {
+        if (this.skip > 0) {
+          return this.skip;
+        }
+        return (this.headLength > 0) ? this.headLength : 1;
+      }
+    }
+
+    // Scans the available bytes of the data item, which begins at the
+    // given offset; the bytes already scanned must be the same as in
+    // the previous call. Returns the data item's length if the data
+    // item is complete, or -1 if more bytes are needed.
+    public long Scan(byte[] data, int offset, int available) {
+      while (true) {
+        if (this.skip > 0) {
+          long n = Math.Min(this.skip, available - this.scanned);
+          this.scanned += n;
+          this.skip -= n;
+          if (this.skip > 0) {
+            return -1;
+          }
+        }
+        while (this.stackSize > 0 &&
+          this.stackRemaining[this.stackSize - 1] == 0) {
+          --this.stackSize;
+        }
+        if (this.started && this.stackSize == 0 && !this.afterTag) {
+          return this.Finish();
+        }
+        if (this.scanned >= available) {
+          return -1;
+        }
+        var pos = (int)(offset + this.scanned);
+        int b = ((int)data[pos]) & 0xff;
+        this.started = true;
+        if (b == 0xff) {
+          if (this.stackSize == 0 || this.afterTag ||
+            this.stackRemaining[this.stackSize - 1] >= 0) {
+            ++this.scanned;
+            return this.Finish();
+          }
+          // End of an indefinite-length item
+          --this.stackSize;
+          ++this.scanned;
+          continue;
+        }
+        int ai = b & 0x1f;
+        int argLength = (ai < 24) ? 0 : ((ai == 24) ? 1 : ((ai == 25) ? 2 :
+              ((ai == 26) ? 4 : ((ai == 27) ? 8 : -1))));
+        int type = b >> 5;
+        if (argLength < 0 && (ai != 31 || type < 2 || type > 5)) {
+          ++this.scanned;
+          return this.Finish();
+        }
+        if (argLength < 0) {
+          argLength = 0;
+        }
+        this.headLength = 1 + argLength;
+        if (available - this.scanned < this.headLength) {
+          this.headLength -= (int)(available - this.scanned);
+          return -1;
+        }
+        long arg = ai < 24 ? ai : 0;
+        for (var i = 1; i <= argLength; ++i) {
+          arg = (arg << 8) | (((long)data[pos + i]) & 0xff);
+        }
+        this.scanned += 1 + argLength;
+        this.headLength = 0;
+        if (type != 6 && this.stackSize > 0 &&
+          this.stackRemaining[this.stackSize - 1] > 0) {
+          --this.stackRemaining[this.stackSize - 1];
+        }
+        this.afterTag = type == 6;
+        if (type >= 2 && type <= 5) {
+          if (ai == 31) {
+            if (!this.Push(-1)) {
+              return this.Finish();
+            }
+          } else if (arg < 0 || arg > Int32.MaxValue) {
+            return this.Finish();
+          } else if (type <= 3) {
+            this.skip = arg;
+          } else if (!this.Push((type == 5) ? arg * 2 : arg)) {
+            return this.Finish();
+          }
+        }
+      }
+    }
+
+    private bool Push(long remaining) {
+      // NOTE: Allows one more level than the limit, for an
+      // indefinite-length string in the innermost array or map
+      if (this.stackSize > this.maxDepth) {
+        return false;
+      }
+      if (this.stackSize == this.stackRemaining.Length) {
+        var newStack = new long[this.stackSize * 2];
+        Array.Copy(this.stackRemaining, newStack, this.stackSize);
+        this.stackRemaining = newStack;
+      }
+      this.stackRemaining[this.stackSize++] = remaining;
+      return true;
+    }
+
+    // Resets this scanner for the next data item and returns the length
+    // of the current one
+    private long Finish() {
+      long ret = this.scanned;
+      this.scanned = 0;
+      this.skip = 0;
+      this.headLength = 0;
+      this.stackSize = 0;
+      this.started = false;
+      this.afterTag = false;
+      return ret;
+    }
+  }
+}
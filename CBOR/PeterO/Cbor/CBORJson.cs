@@ -570,7 +570,9 @@ internal sealed class CBORJson {
       CBORObject obj;
       var nextChar = new int[1];
       var seenComma = false;
-      var myHashMap = new SortedDictionary<CBORObject, CBORObject>();
+      IDictionary<CBORObject, CBORObject> myHashMap =
+        this.options.KeepKeyOrder ? PropertyMap.NewOrderedDict() :
+        new SortedDictionary<CBORObject, CBORObject>();
       while (true) {
         c = this.SkipWhitespaceJSON();
         switch (c) {
@@ -560,7 +560,9 @@ internal sealed class CBORJson3 {
       CBORObject obj;
       var nextchar = new int[1];
       var seenComma = false;
-      var myHashMap = new SortedDictionary<CBORObject, CBORObject>();
+      IDictionary<CBORObject, CBORObject> myHashMap =
+        this.options.KeepKeyOrder ? PropertyMap.NewOrderedDict() :
+        new SortedDictionary<CBORObject, CBORObject>();
       while (true) {
         c = this.SkipWhitespaceJSON();
         switch (c) {
@@ -0,0 +1,111 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using System.Collections.Generic;
+using System.IO;
+
+namespace PeterO.Cbor {
+  // Value of a lazily decoded array or map: holds the portion of
+  // the byte array the array or map was encoded in, and decodes
+  // it the first time the array or map is accessed
+  internal sealed class CBORLazyContainer {
+    private readonly CBOREncodeOptions options;
+    private readonly int depth;
+    private readonly bool isMap;
+    // If true, the array or map is written as it was encoded until it's
+    // decoded (see CBORObject.FromEncodedBytes)
+    private readonly bool writeEncoded;
+    private readonly CBORInternTable internTable;
+    private readonly object syncRoot = new Object();
+    // End offsets of the arrays and maps in the data, keyed by their
+    // start offsets (see CBORReader.ScanContainers), or null if not known
+    private Dictionary<int, int> ends;
+    private byte[] data;
+    private int offset;
+    private int length;
+    private volatile CBORObject value;
+
+    public CBORLazyContainer(
+      byte[] data,
+      int offset,
+      int length,
+      CBOREncodeOptions options,
+      int depth,
+      bool isMap,
+      CBORInternTable internTable,
+      Dictionary<int, int> ends,
+      bool writeEncoded) {
+      this.data = data;
+      this.offset = offset;
+      this.length = length;
+      this.options = options;
+      this.depth = depth;
+      this.isMap = isMap;
+      this.internTable = internTable;
+      this.ends = ends;
+      this.writeEncoded = writeEncoded;
+    }
+
+    public bool IsMap {
+      get {
+        return this.isMap;
+      }
+    }
+
+    // Gets the number of bytes WriteEncoded writes, or -1 if it writes
+    // nothing
+    public int EncodedLength {
+      get {
+        lock (this.syncRoot) {
+          return (this.writeEncoded && this.value == null) ? this.length : -1;
+        }
+      }
+    }
+
+    // Writes the array or map as it was encoded, unless it was decoded
+    // (and so might have been changed since). Returns false if nothing
+    // was written.
+    public bool WriteEncoded(Stream stream) {
+      lock (this.syncRoot) {
+        if (!this.writeEncoded || this.value != null) {
+          return false;
+        }
+        stream.Write(this.data, this.offset, this.length);
+        return true;
+      }
+    }
+
+    // Gets the decoded array or map. Its own items that are arrays or
+    // maps are themselves decoded lazily.
+    public CBORObject GetObject() {
+      CBORObject obj = this.value;
+      if (obj != null) {
+        return obj;
+      }
+      lock (this.syncRoot) {
+        if (this.value == null) {
+          var reader = new CBORReader(
+            this.data,
+            this.offset,
+            this.length,
+            this.options,
+            this.internTable);
+          this.value = reader.ReadLazyContainerItems(this.depth, this.ends);
+          // The encoded form is no longer needed
+          this.data = null;
+          this.ends = null;
+          this.offset = 0;
+          this.length = 0;
+        }
+        return this.value;
+      }
+    }
+  }
+}
@@ -97,11 +97,11 @@ namespace PeterO.Cbor {
   /// <para><b>Nesting Depth:</b></para>
   /// <para>The DecodeFromBytes and Read methods can only read objects
   /// with a limited maximum depth of arrays and maps nested within other
-  /// arrays and maps. The code sets this maximum depth to 500 (allowing
-  /// more than enough nesting for most purposes), but it's possible that
-  /// stack overflows in some runtimes might lower the effective maximum
-  /// nesting depth. When the nesting depth goes above 500, the
-  /// DecodeFromBytes and Read methods throw a CBORException.</para>
+  /// arrays and maps. By default, this maximum depth is 500 (allowing
+  /// more than enough nesting for most purposes); it can be changed with
+  /// the MaxNestingDepth property of CBOREncodeOptions. When the nesting
+  /// depth goes above the maximum, the DecodeFromBytes and Read methods
+  /// throw a CBORException.</para>
   /// <para>The ReadJSON and FromJSONString methods currently have
   /// nesting depths of 1000.</para></remarks>
   [System.Diagnostics.CodeAnalysis.SuppressMessage(
@@ -186,6 +186,11 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
 
     private const int StreamedStringBufferLength = 4096;
 
+    // Least number of items an array or map needs before EncodeToBytes
+    // finds its encoded size first, rather than encoding it into a buffer
+    // that grows
+    private const int CalculatedSizeMinCount = 32;
+
     private static readonly EInteger UInt64MaxValue =
       (EInteger.One << 64) - EInteger.One;
 
@@ -225,8 +230,17 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     private static readonly CBORObject[] FixedObjects =
       InitializeFixedObjects();
 
+    // Cached integers from -256 through 255 (those whose encoding takes
+    // at most two bytes)
+    private static readonly CBORObject[] SmallIntegers =
+      InitializeSmallIntegers();
+
     private readonly int itemtypeValue;
     private readonly object itemValue;
+    // Low and high halves of a tagged object's outermost tag. An untagged
+    // integer, floating-point number, or simple value instead keeps its
+    // value (for a floating-point number, its bits) here, so that the
+    // value needn't be boxed (see ThisLong).
     private readonly int tagHigh;
     private readonly int tagLow;
 
@@ -239,10 +253,9 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
 
     internal CBORObject(int type, object item) {
       #if DEBUG
-      if (type == CBORObjectTypeDouble) {
-        if (!(item is long)) {
-          throw new ArgumentException("expected long for item type");
-        }
+      if (type == CBORObjectTypeInteger || type == CBORObjectTypeDouble ||
+        type == CBORObjectTypeSimpleValue) {
+        throw new ArgumentException("expected long for item type");
       }
       // Check range in debug mode to ensure that Integer and EInteger
       // are unambiguous
@@ -256,7 +269,8 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
         throw new ArgumentException("arbitrary-precision integer does not " +
           "fit major type 0 or 1");
       }
-      if (type == CBORObjectTypeArray && !(item is IList<CBORObject>)) {
+      if (type == CBORObjectTypeArray && !(item is IList<CBORObject>) &&
+        !(item is CBORLazyContainer) && !(item is ImmutableContainer)) {
         throw new InvalidOperationException();
       }
       // if (type == CBORObjectTypeTextStringUtf8 &&
@@ -270,6 +284,15 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       this.tagHigh = 0;
     }
 
+    // Creates an untagged integer, floating-point number (from its bits),
+    // or simple value
+    private CBORObject(int type, long value) {
+      this.itemtypeValue = type;
+      this.itemValue = null;
+      this.tagLow = unchecked((int)value);
+      this.tagHigh = unchecked((int)(value >> 32));
+    }
+
     /// <summary>Gets the number of keys in this map, or the number of
     /// items in this array, or 0 if this item is neither an array nor a
     /// map.</summary>
@@ -314,7 +337,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// <c>false</c>.</value>
     public bool IsFalse {
       get {
-        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisItem
+        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisLong
           == 20;
       }
     }
@@ -358,7 +381,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// <c>false</c>.</value>
     public bool IsNull {
       get {
-        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisItem
+        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisLong
           == 22;
       }
     }
@@ -379,7 +402,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// <c>false</c>.</value>
     public bool IsTrue {
       get {
-        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisItem
+        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisLong
           == 21;
       }
     }
@@ -390,7 +413,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// otherwise, <c>false</c>.</value>
     public bool IsUndefined {
       get {
-        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisItem
+        return this.ItemType == CBORObjectTypeSimpleValue && (int)this.ThisLong
           == 23;
       }
     }
@@ -493,7 +516,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public int SimpleValue {
       get {
         return (this.ItemType == CBORObjectTypeSimpleValue) ?
-          ((int)this.ThisItem) : -1;
+          ((int)this.ThisLong) : -1;
       }
     }
 
@@ -523,7 +546,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           case CBORObjectTypeDouble:
             return CBORType.FloatingPoint;
           case CBORObjectTypeSimpleValue:
-            return ((int)this.ThisItem == 21 || (int)this.ThisItem == 20) ?
+            return ((int)this.ThisLong == 21 || (int)this.ThisLong == 20) ?
               CBORType.Boolean : CBORType.SimpleValue;
           case CBORObjectTypeArray:
             return CBORType.Array;
@@ -610,6 +633,19 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       }
     }
 
+    // Gets the value of an integer, the bits of a floating-point number,
+    // or the value of a simple value, disregarding tags
+    private long ThisLong {
+      get {
+        CBORObject curobject = this;
+        while (curobject.itemtypeValue == CBORObjectTypeTagged) {
+          curobject = (CBORObject)curobject.itemValue;
+        }
+        return (((long)curobject.tagHigh) << 32) |
+          (((long)curobject.tagLow) & 0xffffffffL);
+      }
+    }
+
     /// <summary>Gets the value of a CBOR object by integer index in this
     /// array or by integer key in this map.</summary>
     /// <param name='index'>Index starting at 0 of the element, or the
@@ -696,13 +732,65 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           list[index];
       }
       if (this.Type == CBORType.Map) {
-        IDictionary<CBORObject, CBORObject> map = this.AsMap();
-        CBORObject ckey = CBORObject.FromObject(key);
-        return (!map.ContainsKey(ckey)) ? defaultValue : map[ckey];
+        CBORObject value;
+        return this.AsMap().TryGetValue(CBORObject.FromObject(key), out value) ?
+          value : defaultValue;
       }
       return defaultValue;
     }
 
+    /// <summary>Gets the value of a CBOR object in this map, using a
+    /// string as the key, or a default value if that value is not
+    /// found.</summary>
+    /// <param name='key'>A text string that serves as the key. If this is
+    /// <c>null</c>, looks for <c>CBORObject.Null</c>.</param>
+    /// <param name='defaultValue'>A value to return if an item with the
+    /// given key doesn't exist, or if this object is not a map.</param>
+    /// <returns>The CBOR object referred to by key in this map, or
+    /// <paramref name='defaultValue'/> if there is none.</returns>
+    /// <exception cref='ArgumentException'>The key contains an unpaired
+    /// surrogate code point.</exception>
+    public CBORObject GetOrDefault(string key, CBORObject defaultValue) {
+      if (this.Type != CBORType.Map) {
+        return defaultValue;
+      }
+      CBORObject value;
+      return this.AsMap().TryGetValue(CBORObject.FromObject(key), out value) ?
+        value : defaultValue;
+    }
+
+    /// <summary>Gets the value of a CBOR object in this map, using a text
+    /// string in UTF-8 as the key, or a default value if that value is not
+    /// found. This is faster than converting the key to a .NET string
+    /// first, especially for maps decoded from CBOR data, since those
+    /// maps' text string keys are also kept in UTF-8.</summary>
+    /// <param name='utf8Key'>A byte array holding a text string in UTF-8
+    /// that serves as the key. The array is used only during the call and
+    /// is not changed.</param>
+    /// <param name='defaultValue'>A value to return if an item with the
+    /// given key doesn't exist, if the key is not valid UTF-8, or if this
+    /// object is not a map.</param>
+    /// <returns>The CBOR object referred to by key in this map, or
+    /// <paramref name='defaultValue'/> if there is none.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='utf8Key'/> is null.</exception>
+    public CBORObject GetOrDefaultUtf8(byte[] utf8Key, CBORObject
+      defaultValue) {
+      if (utf8Key == null) {
+        throw new ArgumentNullException(nameof(utf8Key));
+      }
+      if (this.Type != CBORType.Map || !CBORUtilities.CheckUtf8(utf8Key)) {
+        return defaultValue;
+      }
+      // NOTE: The key shares utf8Key's bytes; that's safe because the key
+      // doesn't outlive this call
+      CBORObject ckey = (utf8Key.Length == 0) ? GetFixedObject(0x60) :
+        FromRawUtf8(utf8Key);
+      CBORObject value;
+      return this.AsMap().TryGetValue(ckey, out value) ? value :
+        defaultValue;
+    }
+
     /// <summary>Gets the value of a CBOR object by integer index in this
     /// array or by CBOR object key in this map.</summary>
     /// <param name='key'>A CBOR object serving as the key to the map or
@@ -740,8 +828,8 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           throw new ArgumentNullException(nameof(key));
         }
         if (this.Type == CBORType.Map) {
-          IDictionary<CBORObject, CBORObject> map = this.AsMap();
-          return (!map.ContainsKey(key)) ? null : map[key];
+          CBORObject value;
+          return this.AsMap().TryGetValue(key, out value) ? value : null;
         }
         if (this.Type == CBORType.Array) {
           if (!key.IsNumber || !key.AsNumber().IsInteger()) {
@@ -806,7 +894,11 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           throw new ArgumentNullException(nameof(key));
         }
         CBORObject objkey = CBORObject.FromObject(key);
-        return this[objkey];
+        if (this.Type != CBORType.Map) {
+          return this[objkey];
+        }
+        CBORObject value;
+        return this.AsMap().TryGetValue(objkey, out value) ? value : null;
       }
 
       set {
@@ -922,10 +1014,50 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       if (data == null) {
         throw new ArgumentNullException(nameof(data));
       }
+      return DecodeSequenceFromBytes(data, 0, data.Length, options);
+    }
+
+    /// <summary>
+    /// <para>Generates a sequence of CBOR objects from a portion of an
+    /// array of CBOR-encoded bytes. The bytes are read directly from the
+    /// array rather than through a data stream.</para></summary>
+    /// <param name='data'>A byte array, the specified portion of which
+    /// encodes any number of CBOR objects (including zero), one after the
+    /// other.</param>
+    /// <param name='offset'>An index, starting at 0, showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion of
+    /// <paramref name='data'/> (but not more than <paramref
+    /// name='data'/> 's length).</param>
+    /// <param name='options'>Specifies options to control how the CBOR
+    /// object is decoded. See
+    /// <see cref='PeterO.Cbor.CBOREncodeOptions'/> for more information.
+    /// In this method, the AllowEmpty property is treated as always set
+    /// regardless of that value as specified in this parameter.</param>
+    /// <returns>An array of CBOR objects decoded from the given portion of
+    /// the byte array. Returns an empty array if <paramref name='count'/>
+    /// is 0.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data. This includes cases where the last
+    /// CBOR object in the data was read only partly.</exception>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null, or the parameter <paramref name='options'/>
+    /// is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public static CBORObject[] DecodeSequenceFromBytes(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options) {
       if (options == null) {
         throw new ArgumentNullException(nameof(options));
       }
-      if (data.Length == 0) {
+      CheckByteArrayPortion(data, offset, count);
+      if (count == 0) {
         return new CBORObject[0];
       }
       CBOREncodeOptions opt = options;
@@ -933,14 +1065,24 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
         opt = new CBOREncodeOptions(opt.ToString() + ";allowempty=1");
       }
       var cborList = new List<CBORObject>();
-      using (var ms = new MemoryStream(data)) {
-        while (true) {
-          CBORObject obj = Read(ms, opt);
-          if (obj == null) {
-            break;
-          }
-          cborList.Add(obj);
+      var pos = 0;
+      CBORInternTable internTable = opt.InternStrings ?
+        new CBORInternTable() : null;
+      while (pos < count) {
+        // NOTE: A new reader is used for each item, since stringref
+        // namespaces and shared references don't span items
+        var reader = new CBORReader(
+          data,
+          offset + pos,
+          count - pos,
+          opt,
+          internTable);
+        CBORObject obj = reader.Read();
+        if (obj == null) {
+          break;
         }
+        cborList.Add(obj);
+        pos += (int)reader.Position;
       }
       return (CBORObject[])cborList.ToArray();
     }
@@ -1086,43 +1228,244 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       if (data == null) {
         throw new ArgumentNullException(nameof(data));
       }
-      if (data.Length == 0) {
+      return DecodeFromBytes(data, 0, data.Length, options);
+    }
+
+    /// <summary>
+    /// <para>Generates a CBOR object from a portion of an array of
+    /// CBOR-encoded bytes.</para></summary>
+    /// <param name='data'>A byte array, the specified portion of which
+    /// encodes a single CBOR object.</param>
+    /// <param name='offset'>An index, starting at 0, showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion of
+    /// <paramref name='data'/> (but not more than <paramref
+    /// name='data'/> 's length).</param>
+    /// <returns>A CBOR object decoded from the given portion of the byte
+    /// array.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data. This includes cases where not all of
+    /// the portion represents a CBOR object. This exception is also thrown
+    /// if <paramref name='count'/> is 0.</exception>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public static CBORObject DecodeFromBytes(
+      byte[] data,
+      int offset,
+      int count) {
+      return DecodeFromBytes(data, offset, count, CBOREncodeOptions.Default);
+    }
+
+    /// <summary>Generates a CBOR object from a portion of an array of
+    /// CBOR-encoded bytes, using the given <c>CBOREncodeOptions</c>
+    /// object to control the decoding process. The bytes are read
+    /// directly from the array rather than through a data
+    /// stream.</summary>
+    /// <param name='data'>A byte array, the specified portion of which
+    /// encodes a single CBOR object.</param>
+    /// <param name='offset'>An index, starting at 0, showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion of
+    /// <paramref name='data'/> (but not more than <paramref
+    /// name='data'/> 's length).</param>
+    /// <param name='options'>Specifies options to control how the CBOR
+    /// object is decoded. See <see cref='PeterO.Cbor.CBOREncodeOptions'/>
+    /// for more information.</param>
+    /// <returns>A CBOR object decoded from the given portion of the byte
+    /// array. Returns null (as opposed to CBORObject.Null) if <paramref
+    /// name='count'/> is 0 and the AllowEmpty property is set on the given
+    /// options object.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data. This includes cases where not all of
+    /// the portion represents a CBOR object. This exception is also thrown
+    /// if <paramref name='count'/> is 0 unless the AllowEmpty property is
+    /// set on the given options object.</exception>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null, or the parameter <paramref name='options'/>
+    /// is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public static CBORObject DecodeFromBytes(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options) {
+      return DecodeFromBytes(data, offset, count, options, null);
+    }
+
+    // Same as the public method, except that text strings are
+    // interned in the given table if it isn't null
+    internal static CBORObject DecodeFromBytes(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options,
+      CBORInternTable internTable) {
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      CheckByteArrayPortion(data, offset, count);
+      if (count == 0) {
         if (options.AllowEmpty) {
           return null;
         }
         throw new CBORException("data is empty.");
       }
-      var firstbyte = (int)(data[0] & (int)0xff);
+      var firstbyte = (int)(data[offset] & (int)0xff);
       int expectedLength = ValueExpectedLengths[firstbyte];
       // if invalid
       if (expectedLength == -1) {
         throw new CBORException("Unexpected data encountered");
       }
-      if (expectedLength != 0) {
+      // NOTE: An empty map is read below if it's to keep its key order
+      if (expectedLength != 0 &&
+        (firstbyte != 0xa0 || !options.KeepKeyOrder)) {
         // if fixed length
-        CheckCBORLength(expectedLength, data.Length);
+        CheckCBORLength(expectedLength, count);
         if (!options.Ctap2Canonical ||
           (firstbyte >= 0x00 && firstbyte < 0x18) ||
           (firstbyte >= 0x20 && firstbyte < 0x38)) {
-          return GetFixedLengthObject(firstbyte, data);
+          return GetFixedLengthObject(firstbyte, data, offset);
         }
       }
       if (firstbyte == 0xc0 && !options.Ctap2Canonical) {
         // value with tag 0
-        string s = GetOptimizedStringIfShortAscii(data, 1);
+        string s = GetOptimizedStringIfShortAscii(
+            data,
+            offset + 1,
+            offset + count);
         if (s != null) {
           return new CBORObject(FromObject(s), 0, 0);
         }
       }
-      // For objects with variable length,
-      // read the object as though
-      // the byte array were a stream
-      using (var ms = new MemoryStream(data)) {
-        CBORObject o = Read(ms, options);
-        CheckCBORLength(
-          (long)data.Length,
-          (long)ms.Position);
-        return o;
+      // For objects with variable length, read the object
+      // directly from the byte array
+      var reader = (internTable != null) ?
+        new CBORReader(data, offset, count, options, internTable) :
+        new CBORReader(data, offset, count, options);
+      CBORObject o = reader.Read();
+      CheckCBORLength(count, reader.Position);
+      return o;
+    }
+
+    /// <summary>Generates a CBOR object from an array of CBOR-encoded
+    /// bytes without decoding it right away, using the default options.
+    /// See the overload taking a <c>CBOREncodeOptions</c> object for
+    /// details.</summary>
+    /// <param name='data'>A byte array in which a single CBOR object is
+    /// encoded.</param>
+    /// <returns>A CBOR object for the encoded data.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>The data is not
+    /// well-formed CBOR, or not all of the byte array represents a CBOR
+    /// object, or the byte array is empty.</exception>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    public static CBORObject FromEncodedBytes(byte[] data) {
+      return FromEncodedBytes(data, CBOREncodeOptions.Default);
+    }
+
+    /// <summary>
+    /// <para>Generates a CBOR object from an array of CBOR-encoded bytes
+    /// without decoding it right away. This is useful for embedding a
+    /// CBOR object that is already encoded, such as one received from
+    /// elsewhere, in another CBOR object that is to be encoded.</para>
+    /// <para>If the bytes encode an untagged array or map, they are only
+    /// checked to be well-formed CBOR, and the array or map is decoded
+    /// the first time its items are accessed. Until then, encoding the
+    /// returned object (or an object it's in) with <c>WriteTo</c> or
+    /// <c>EncodeToBytes</c> copies the bytes to the output as they are,
+    /// unless the Ctap2Canonical, StringRefs, Float64, or
+    /// UseIndefLengthStrings option is used, in which case the array or
+    /// map is decoded and encoded again with those options. Other CBOR
+    /// objects are decoded right away.</para></summary>
+    /// <param name='data'>A byte array in which a single CBOR object is
+    /// encoded. The byte array should not be changed while the returned
+    /// object might still be accessed.</param>
+    /// <param name='options'>Specifies options to control how the CBOR
+    /// object is decoded. See <see cref='PeterO.Cbor.CBOREncodeOptions'/>
+    /// for more information.</param>
+    /// <returns>A CBOR object for the encoded data.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>The data is not
+    /// well-formed CBOR, or not all of the byte array represents a CBOR
+    /// object, or the byte array is empty. Because the items of an array
+    /// or map are decoded only when they are accessed, other errors in
+    /// them (such as duplicate map keys) cause this exception to be
+    /// thrown then.</exception>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null, or the parameter <paramref name='options'/>
+    /// is null.</exception>
+    public static CBORObject FromEncodedBytes(
+      byte[] data,
+      CBOREncodeOptions options) {
+      if (data == null) {
+        throw new ArgumentNullException(nameof(data));
+      }
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      if (data.Length == 0) {
+        throw new CBORException("data is empty.");
+      }
+      int type = (data[0] >> 5) & 0x07;
+      if ((type != 4 && type != 5) || data[0] == 0x80 || data[0] == 0xa0) {
+        // Not worth putting off decoding
+        return DecodeFromBytes(data, options);
+      }
+      var ends = new Dictionary<int, int>();
+      int end = CBORReader.ScanContainers(
+          data,
+          0,
+          data.Length,
+          options,
+          0,
+          ends);
+      CheckCBORLength(end, data.Length);
+      return FromLazyContainer(new CBORLazyContainer(
+            data,
+            0,
+            data.Length,
+            options,
+            0,
+            type == 5,
+            options.InternStrings ? new CBORInternTable() : null,
+            ends,
+            true));
+    }
+
+    internal static void CheckByteArrayPortion(
+      byte[] data,
+      int offset,
+      int count) {
+      if (data == null) {
+        throw new ArgumentNullException(nameof(data));
+      }
+      if (offset < 0) {
+        throw new ArgumentException("offset (" + offset + ") is not greater" +
+          "\u0020or equal to 0");
+      }
+      if (offset > data.Length) {
+        throw new ArgumentException("offset (" + offset + ") is not less or" +
+          "\u0020equal to " + data.Length);
+      }
+      if (count < 0) {
+        throw new ArgumentException("count (" + count + ") is not greater or" +
+          "\u0020equal to 0");
+      }
+      if (count > data.Length) {
+        throw new ArgumentException("count (" + count + ") is not less or" +
+          "\u0020equal to " + data.Length);
+      }
+      if (data.Length - offset < count) {
+        throw new ArgumentException("data's length minus " + offset + " (" +
+          (data.Length - offset) + ") is not greater or equal to " + count);
       }
     }
 
@@ -2049,12 +2392,9 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// 64-bit signed integer.</param>
     /// <returns>A CBOR object.</returns>
     public static CBORObject FromObject(long value) {
-      if (value >= 0L && value < 24L) {
-        return FixedObjects[(int)value];
-      } else {
-        return (value >= -24L && value < 0L) ? FixedObjects[0x20 - (int)(value +
-              1L)] : new CBORObject(CBORObjectTypeInteger, value);
-      }
+      return (value >= -256L && value < 256L) ?
+        SmallIntegers[(int)value + 256] :
+        new CBORObject(CBORObjectTypeInteger, value);
     }
 
     /// <summary>Generates a CBOR object from a CBOR object.</summary>
@@ -2127,6 +2467,11 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
         }
         cbor = cbor.UntagOne();
       }
+      int encodedLength = cbor.GetEncodedItemLength(CBOREncodeOptions.Default);
+      if (encodedLength >= 0) {
+        // Written from bytes already encoded
+        return checked(size + encodedLength);
+      }
       if (cbor.ItemType == CBORObjectTypeTextStringUtf8) {
         byte[] bytes = (byte[])this.ThisItem;
         size = checked(size + IntegerByteLength(bytes.Length));
@@ -2184,9 +2529,9 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           return checked(size + ulength);
         }
         case CBORType.ByteString: {
-          byte[] bytes = cbor.GetByteString();
-          size = checked(size + IntegerByteLength(bytes.Length));
-          return checked(size + bytes.Length);
+          int byteCount = cbor.AsByteSegment().Count;
+          size = checked(size + IntegerByteLength(byteCount));
+          return checked(size + byteCount);
         }
         case CBORType.Boolean:
           return checked(size + 1);
@@ -2436,12 +2781,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// 32-bit signed integer.</param>
     /// <returns>A CBOR object.</returns>
     public static CBORObject FromObject(int value) {
-      if (value >= 0 && value < 24) {
-        return FixedObjects[value];
-      } else {
-        return (value >= -24 && value < 0) ? FixedObjects[0x20 - (value + 1)] :
-          FromObject((long)value);
-      }
+      return FromObject((long)value);
     }
 
     /// <summary>Generates a CBOR object from a 16-bit signed
@@ -2450,12 +2790,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// 16-bit signed integer.</param>
     /// <returns>A CBOR object generated from the given integer.</returns>
     public static CBORObject FromObject(short value) {
-      if (value >= 0 && value < 24) {
-        return FixedObjects[value];
-      } else {
-        return (value >= -24 && value < 0) ? FixedObjects[0x20 - (value + 1)] :
-          FromObject((long)value);
-      }
+      return FromObject((long)value);
     }
 
     /// <summary>Returns the CBOR true value or false value, depending on
@@ -3276,7 +3611,11 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     }
 
     /// <summary>Creates a new empty CBOR map that ensures that keys are
-    /// stored in the order in which they are first inserted.</summary>
+    /// stored in the order in which they are first inserted. Such a map
+    /// finds keys by their hash codes rather than by comparing them with
+    /// other keys, so looking up keys in it is generally faster than in a
+    /// map created with <c>NewMap</c>, especially if it has many
+    /// keys.</summary>
     /// <returns>A new CBOR map.</returns>
     public static CBORObject NewOrderedMap() {
       return new CBORObject(
@@ -3303,15 +3642,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       if (stream == null) {
         throw new ArgumentNullException(nameof(stream));
       }
-      var cborList = new List<CBORObject>();
-      while (true) {
-        CBORObject obj = Read(stream, AllowEmptyOptions);
-        if (obj == null) {
-          break;
-        }
-        cborList.Add(obj);
-      }
-      return (CBORObject[])cborList.ToArray();
+      return ReadSequence(stream, AllowEmptyOptions);
     }
 
     /// <summary>
@@ -3347,12 +3678,19 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
         opt = new CBOREncodeOptions(opt.ToString() + ";allowempty=1");
       }
       var cborList = new List<CBORObject>();
-      while (true) {
-        CBORObject obj = Read(stream, opt);
-        if (obj == null) {
-          break;
+      try {
+        // NOTE: The whole stream is read, so a single reader can read
+        // the stream ahead in large blocks
+        var reader = new CBORReader(stream, opt, true);
+        while (true) {
+          CBORObject obj = reader.Read();
+          if (obj == null) {
+            break;
+          }
+          cborList.Add(obj);
         }
-        cborList.Add(obj);
+      } catch (IOException ex) {
+        throw new CBORException("I/O error occurred.", ex);
       }
       return (CBORObject[])cborList.ToArray();
     }
@@ -3372,12 +3710,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       if (stream == null) {
         throw new ArgumentNullException(nameof(stream));
       }
-      try {
-        var reader = new CBORReader(stream);
-        return reader.Read();
-      } catch (IOException ex) {
-        throw new CBORException("I/O error occurred.", ex);
-      }
+      return Read(stream, CBOREncodeOptions.Default);
     }
 
     /// <summary>Reads an object in CBOR format from a data stream, using
@@ -3393,13 +3726,32 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// name='stream'/> is null.</exception>
     /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
     /// reading or parsing the data.</exception>
+    /// <remarks>If the stream supports seeking, it's read ahead into a
+    /// buffer that starts small and grows as needed, and afterwards the
+    /// stream is moved back to just after the CBOR object. Otherwise, the
+    /// stream is read without buffering, so that no bytes after the CBOR
+    /// object are consumed; this can mean many small reads from the
+    /// stream. To read many CBOR objects from such a stream, use
+    /// <c>ReadSequence</c> or <c>CBORSequenceReader</c> instead, which
+    /// read the stream in large blocks.</remarks>
     public static CBORObject Read(Stream stream, CBOREncodeOptions options) {
+      if (stream == null) {
+        throw new ArgumentNullException(nameof(stream));
+      }
       if (options == null) {
         throw new ArgumentNullException(nameof(options));
       }
       try {
-        var reader = new CBORReader(stream, options);
-        return reader.Read();
+        // Read ahead only if the stream can seek back over the bytes
+        // not consumed; otherwise, read no more than the object needs,
+        // so that the stream is left just after the object
+        bool seekable = stream.CanSeek;
+        var reader = new CBORReader(stream, options, seekable);
+        CBORObject obj = reader.Read();
+        if (seekable) {
+          reader.ReturnUnreadBytes();
+        }
+        return obj;
       } catch (IOException ex) {
         throw new CBORException("I/O error occurred.", ex);
       }
@@ -4742,7 +5094,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public int AsInt32Value() {
       switch (this.ItemType) {
         case CBORObjectTypeInteger: {
-          var longValue = (long)this.ThisItem;
+          var longValue = this.ThisLong;
           if (longValue < Int32.MinValue || longValue > Int32.MaxValue) {
             throw new OverflowException();
           }
@@ -4779,7 +5131,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public long AsInt64Value() {
       switch (this.ItemType) {
         case CBORObjectTypeInteger:
-          return (long)this.ThisItem;
+          return this.ThisLong;
         case CBORObjectTypeEInteger: {
           var ei = (EInteger)this.ThisItem;
           return ei.ToInt64Checked();
@@ -4815,7 +5167,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public bool CanValueFitInInt32() {
       switch (this.ItemType) {
         case CBORObjectTypeInteger: {
-          var elong = (long)this.ThisItem;
+          var elong = this.ThisLong;
           return elong >= Int32.MinValue && elong <= Int32.MaxValue;
         }
         case CBORObjectTypeEInteger: {
@@ -4837,7 +5189,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public EInteger AsEIntegerValue() {
       switch (this.ItemType) {
         case CBORObjectTypeInteger:
-          return EInteger.FromInt64((long)this.ThisItem);
+          return EInteger.FromInt64(this.ThisLong);
         case CBORObjectTypeEInteger:
           return (EInteger)this.ThisItem;
         default: throw new InvalidOperationException("Not an integer type");
@@ -4860,7 +5212,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public long AsDoubleBits() {
       switch (this.Type) {
         case CBORType.FloatingPoint:
-          return (long)this.ThisItem;
+          return this.ThisLong;
         default: throw new InvalidOperationException("Not a floating-point" +
             "\u0020type");
       }
@@ -4876,7 +5228,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public double AsDoubleValue() {
       switch (this.Type) {
         case CBORType.FloatingPoint:
-          return CBORUtilities.Int64BitsToDouble((long)this.ThisItem);
+          return CBORUtilities.Int64BitsToDouble(this.ThisLong);
         default: throw new InvalidOperationException("Not a floating-point" +
             "\u0020type");
       }
@@ -5172,8 +5524,8 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       if (typeA == typeB) {
         switch (typeA) {
           case CBORObjectTypeInteger: {
-            var a = (long)objA;
-            var b = (long)objB;
+            long a = this.ThisLong;
+            long b = other.ThisLong;
             if (a >= 0 && b >= 0) {
               cmp = (a == b) ? 0 : ((a < b) ? -1 : 1);
             } else if (a <= 0 && b <= 0) {
@@ -5201,7 +5553,12 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
                 other.EncodeToBytes());
             break;
           }
-          case CBORObjectTypeByteString:
+          case CBORObjectTypeByteString: {
+            cmp = CBORUtilities.ByteSegmentCompareLengthFirst(
+                this.AsByteSegment(),
+                other.AsByteSegment());
+            break;
+          }
           case CBORObjectTypeTextStringUtf8: {
             cmp = CBORUtilities.ByteArrayCompareLengthFirst((byte[])objA,
                 (byte[])objB);
@@ -5216,15 +5573,11 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
             break;
           }
           case CBORObjectTypeArray: {
-            cmp = ListCompare(
-                (List<CBORObject>)objA,
-                (List<CBORObject>)objB);
+            cmp = ListCompare(this.AsList(), other.AsList());
             break;
           }
           case CBORObjectTypeMap:
-            cmp = MapCompare(
-                (IDictionary<CBORObject, CBORObject>)objA,
-                (IDictionary<CBORObject, CBORObject>)objB);
+            cmp = MapCompare(this.AsMap(), other.AsMap());
             break;
           case CBORObjectTypeTagged:
             cmp = this.MostOuterTag.CompareTo(other.MostOuterTag);
@@ -5233,8 +5586,8 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
             }
             break;
           case CBORObjectTypeSimpleValue: {
-            var valueA = (int)objA;
-            var valueB = (int)objB;
+            var valueA = (int)this.ThisLong;
+            var valueB = (int)other.ThisLong;
             cmp = (valueA == valueB) ? 0 : ((valueA < valueB) ? -1 : 1);
             break;
           }
@@ -5482,7 +5835,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
             break;
           }
           case CBORObjectTypeInteger: {
-            var value = (long)this.ThisItem;
+            var value = this.ThisLong;
             byte[] intBytes = null;
             if (value >= 0) {
               intBytes = GetPositiveInt64Bytes(0, value);
@@ -5512,6 +5865,35 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           }
         }
       }
+      if (!options.UseIndefLengthStrings && !options.Float64 &&
+        !options.StringRefs) {
+        var immutable = this.itemValue as ImmutableContainer;
+        if (immutable != null) {
+          byte[] encoded = immutable.Encoded;
+          if (encoded == null) {
+            encoded = this.EncodeToCalculatedSize(options);
+            immutable.Encoded = encoded;
+          }
+          if (encoded != null) {
+            // NOTE: The array or map keeps its bytes, so a copy is
+            // returned
+            var copy = new byte[encoded.Length];
+            Array.Copy(encoded, copy, encoded.Length);
+            return copy;
+          }
+        }
+        // NOTE: CalcEncodedSize gives the exact size for these options,
+        // but it walks the whole tree, so it's worth it only if the size
+        // is already known or the array or map is big enough that a
+        // growing buffer would be copied several times
+        if (this.GetEncodedItemLength(options) >= 0 ||
+          this.Count >= CalculatedSizeMinCount) {
+          byte[] exactBytes = this.EncodeToCalculatedSize(options);
+          if (exactBytes != null) {
+            return exactBytes;
+          }
+        }
+      }
       try {
         using (var ms = new MemoryStream(16)) {
           this.WriteTo(ms, options);
@@ -5522,6 +5904,107 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       }
     }
 
+    // Encodes this object into a byte array allocated once with the size
+    // CalcEncodedSize gives, rather than into a buffer that grows and is
+    // copied at the end. Returns null if that size can't be found or
+    // turns out to be too small for the encoded object.
+    private byte[] EncodeToCalculatedSize(CBOREncodeOptions options) {
+      long size;
+      try {
+        size = this.CalcEncodedSize();
+      } catch (CBORException) {
+        // Too deeply nested, or an array or map includes itself
+        return null;
+      }
+      if (size > Int32.MaxValue) {
+        return null;
+      }
+      var bytes = new byte[(int)size];
+      int written;
+      if (!this.TryEncode(bytes, 0, bytes.Length, options, out written)) {
+        return null;
+      }
+      if (written != bytes.Length) {
+        // NOTE: Trimming the array is cheaper than encoding again
+        var trimmed = new byte[written];
+        Array.Copy(bytes, trimmed, written);
+        return trimmed;
+      }
+      return bytes;
+    }
+
+    /// <summary>Writes this CBOR object in CBOR format into a byte array,
+    /// using the default options, if the encoded object fits
+    /// there.</summary>
+    /// <param name='buffer'>A byte array to write the encoded object to,
+    /// starting at its beginning.</param>
+    /// <param name='bytesWritten'>Receives the number of bytes written, or
+    /// 0 if the encoded object doesn't fit in the byte array.</param>
+    /// <returns><c>true</c> if the encoded object fits in the byte array;
+    /// otherwise, <c>false</c>.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='buffer'/> is null.</exception>
+    public bool TryEncode(byte[] buffer, out int bytesWritten) {
+      if (buffer == null) {
+        throw new ArgumentNullException(nameof(buffer));
+      }
+      return this.TryEncode(
+          buffer,
+          0,
+          buffer.Length,
+          CBOREncodeOptions.Default,
+          out bytesWritten);
+    }
+
+    /// <summary>Writes this CBOR object in CBOR format into a portion of
+    /// a byte array, if the encoded object fits there. The encoded object
+    /// is the same as the one <c>EncodeToBytes</c> returns for the same
+    /// options, but unlike that method, this method doesn't allocate a
+    /// byte array for it, so that the same byte array can be reused to
+    /// encode many CBOR objects.</summary>
+    /// <param name='buffer'>A byte array to write the encoded object
+    /// to.</param>
+    /// <param name='offset'>An index, starting at 0, showing where the
+    /// encoded object is written in <paramref name='buffer'/>.</param>
+    /// <param name='count'>The greatest number of bytes to write.</param>
+    /// <param name='options'>Options for encoding the data to
+    /// CBOR.</param>
+    /// <param name='bytesWritten'>Receives the number of bytes written, or
+    /// 0 if the encoded object doesn't fit in the given portion of the
+    /// byte array.</param>
+    /// <returns><c>true</c> if the encoded object fits in the given
+    /// portion of the byte array; otherwise, <c>false</c>, in which case
+    /// the contents of that portion are unspecified.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='buffer'/> or <paramref name='options'/> is
+    /// null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='buffer'/> 's length, or <paramref
+    /// name='buffer'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public bool TryEncode(
+      byte[] buffer,
+      int offset,
+      int count,
+      CBOREncodeOptions options,
+      out int bytesWritten) {
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      CheckByteArrayPortion(buffer, offset, count);
+      bytesWritten = 0;
+      // NOTE: Unlike a memory stream, this stream doesn't throw when
+      // the portion is too small; it only records the overflow
+      var output = new ByteArrayOutputStream(buffer, offset, count);
+      this.WriteTo(output, options);
+      if (output.Overflowed) {
+        return false;
+      }
+      bytesWritten = (int)output.Position;
+      return true;
+    }
+
     /// <summary>Determines whether this object and another object are
     /// equal and have the same type. Not-a-number values can be considered
     /// equal by this method.</summary>
@@ -5567,25 +6050,25 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       }
       switch (this.itemtypeValue) {
         case CBORObjectTypeByteString:
+          return CBORUtilities.ByteSegmentEquals(
+              this.AsByteSegment(),
+              otherValue.AsByteSegment());
         case CBORObjectTypeTextStringUtf8:
           return CBORUtilities.ByteArrayEquals(
               (byte[])this.itemValue,
               otherValue.itemValue as byte[]);
-        case CBORObjectTypeMap: {
-          IDictionary<CBORObject, CBORObject> cbordict =
-            otherValue.itemValue as IDictionary<CBORObject, CBORObject>;
-          return CBORMapEquals(this.AsMap(), cbordict);
-        }
+        case CBORObjectTypeMap:
+          return CBORMapEquals(this.AsMap(), otherValue.AsMap());
         case CBORObjectTypeArray:
-          return CBORArrayEquals(
-              this.AsList(),
-              otherValue.itemValue as IList<CBORObject>);
+          return CBORArrayEquals(this.AsList(), otherValue.AsList());
         case CBORObjectTypeTagged:
           return this.tagLow == otherValue.tagLow &&
             this.tagHigh == otherValue.tagHigh &&
             Object.Equals(this.itemValue, otherValue.itemValue);
+        case CBORObjectTypeInteger:
+        case CBORObjectTypeSimpleValue:
         case CBORObjectTypeDouble:
-          return this.AsDoubleBits() == otherValue.AsDoubleBits();
+          return this.ThisLong == otherValue.ThisLong;
         default: return Object.Equals(this.itemValue, otherValue.itemValue);
       }
     }
@@ -5600,7 +6083,27 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     /// byte string.</exception>
     public byte[] GetByteString() {
       if (this.ItemType == CBORObjectTypeByteString) {
-        return (byte[])this.ThisItem;
+        object item = this.ThisItem;
+        var slice = item as CBORByteStringSlice;
+        return (slice != null) ? slice.GetBytes() : (byte[])item;
+      }
+      throw new InvalidOperationException("Not a byte string");
+    }
+
+    /// <summary>Gets the portion of a byte array that holds this CBOR
+    /// object's bytes, if this object is a byte string, without copying
+    /// the data. If this byte string was decoded with the
+    /// ShareByteStrings option, the portion is part of the byte array it
+    /// was decoded from; otherwise, the portion is the whole byte array
+    /// that <see cref='PeterO.Cbor.CBORObject.GetByteString'/>
+    /// returns. The portion's contents should not be changed.</summary>
+    /// <returns>An array segment holding this CBOR object's
+    /// bytes.</returns>
+    /// <exception cref='InvalidOperationException'>This object is not a
+    /// byte string.</exception>
+    public ArraySegment<byte> GetByteStringSegment() {
+      if (this.ItemType == CBORObjectTypeByteString) {
+        return this.AsByteSegment();
       }
       throw new InvalidOperationException("Not a byte string");
     }
@@ -5613,52 +6116,55 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     public override int GetHashCode() {
       var hashCode = 651869431;
       unchecked {
-        if (this.itemValue != null) {
-          var itemHashCode = 0;
-          long longValue = 0L;
-          switch (this.itemtypeValue) {
-            case CBORObjectTypeByteString:
-              itemHashCode =
-                CBORUtilities.ByteArrayHashCode(this.GetByteString());
-              break;
-            case CBORObjectTypeTextStringUtf8:
-              itemHashCode = CBORUtilities.Utf8HashCode(
-                  (byte[])this.itemValue);
-              break;
-            case CBORObjectTypeMap:
-              itemHashCode = CBORMapHashCode(this.AsMap());
-              break;
-            case CBORObjectTypeArray:
-              itemHashCode = CBORArrayHashCode(this.AsList());
-              break;
-            case CBORObjectTypeTextString:
-              itemHashCode = CBORUtilities.StringHashCode(
-                  (string)this.itemValue);
-              break;
-            case CBORObjectTypeSimpleValue:
-              itemHashCode = (int)this.itemValue;
-              break;
-            case CBORObjectTypeDouble:
-              longValue = this.AsDoubleBits();
-              longValue |= longValue >> 32;
-              itemHashCode = unchecked((int)longValue);
-              break;
-            case CBORObjectTypeInteger:
-              longValue = (long)this.itemValue;
-              longValue |= longValue >> 32;
-              itemHashCode = unchecked((int)longValue);
-              break;
-            case CBORObjectTypeTagged:
-              itemHashCode = unchecked(this.tagLow + this.tagHigh);
-              itemHashCode += 651869483 * this.itemValue.GetHashCode();
-              break;
-            default:
-              // EInteger, CBORObject
-              itemHashCode = this.itemValue.GetHashCode();
-              break;
-          }
-          hashCode += 651869479 * itemHashCode;
+        var itemHashCode = 0;
+        long longValue = 0L;
+        ImmutableContainer immutable;
+        switch (this.itemtypeValue) {
+          case CBORObjectTypeByteString:
+            itemHashCode =
+              CBORUtilities.ByteSegmentHashCode(this.AsByteSegment());
+            break;
+          case CBORObjectTypeTextStringUtf8:
+            itemHashCode = CBORUtilities.Utf8HashCode(
+                (byte[])this.itemValue);
+            break;
+          case CBORObjectTypeMap:
+            immutable = this.itemValue as ImmutableContainer;
+            itemHashCode = (immutable != null) ? immutable.ItemHashCode :
+              CBORMapHashCode(this.AsMap());
+            break;
+          case CBORObjectTypeArray:
+            immutable = this.itemValue as ImmutableContainer;
+            itemHashCode = (immutable != null) ? immutable.ItemHashCode :
+              CBORArrayHashCode(this.AsList());
+            break;
+          case CBORObjectTypeTextString:
+            itemHashCode = CBORUtilities.StringHashCode(
+                (string)this.itemValue);
+            break;
+          case CBORObjectTypeSimpleValue:
+            itemHashCode = (int)this.ThisLong;
+            break;
+          case CBORObjectTypeDouble:
+            longValue = this.AsDoubleBits();
+            longValue |= longValue >> 32;
+            itemHashCode = unchecked((int)longValue);
+            break;
+          case CBORObjectTypeInteger:
+            longValue = this.ThisLong;
+            longValue |= longValue >> 32;
+            itemHashCode = unchecked((int)longValue);
+            break;
+          case CBORObjectTypeTagged:
+            itemHashCode = unchecked(this.tagLow + this.tagHigh);
+            itemHashCode += 651869483 * this.itemValue.GetHashCode();
+            break;
+          default:
+            // EInteger, CBORObject
+            itemHashCode = this.itemValue.GetHashCode();
+            break;
         }
+        hashCode += 651869479 * itemHashCode;
       }
       return hashCode;
     }
@@ -6573,40 +7079,13 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           }
         }
       }
-      byte[] bytes;
       switch (byteCount) {
         case 2:
-          bytes = new byte[] {
-            (byte)0xf9,
-            (byte)((floatingBits >> 8) & 0xffL),
-            (byte)(floatingBits & 0xffL),
-          };
-          outputStream.Write(bytes, 0, 3);
-          return 3;
+          return WriteHead(outputStream, 0xf9, floatingBits, 2);
         case 4:
-          bytes = new byte[] {
-            (byte)0xfa,
-            (byte)((floatingBits >> 24) & 0xffL),
-            (byte)((floatingBits >> 16) & 0xffL),
-            (byte)((floatingBits >> 8) & 0xffL),
-            (byte)(floatingBits & 0xffL),
-          };
-          outputStream.Write(bytes, 0, 5);
-          return 5;
+          return WriteHead(outputStream, 0xfa, floatingBits, 4);
         case 8:
-          bytes = new byte[] {
-            (byte)0xfb,
-            (byte)((floatingBits >> 56) & 0xffL),
-            (byte)((floatingBits >> 48) & 0xffL),
-            (byte)((floatingBits >> 40) & 0xffL),
-            (byte)((floatingBits >> 32) & 0xffL),
-            (byte)((floatingBits >> 24) & 0xffL),
-            (byte)((floatingBits >> 16) & 0xffL),
-            (byte)((floatingBits >> 8) & 0xffL),
-            (byte)(floatingBits & 0xffL),
-          };
-          outputStream.Write(bytes, 0, 9);
-          return 9;
+          return WriteHead(outputStream, 0xfb, floatingBits, 8);
         default:
           throw new ArgumentOutOfRangeException(nameof(byteCount));
       }
@@ -7136,24 +7615,72 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
         stream.Write(bytes, 0, bytes.Length);
         return;
       }
+      int type = this.ItemType;
+      if (options.StringRefs && (type == CBORObjectTypeArray ||
+          type == CBORObjectTypeMap)) {
+        // NOTE: Only arrays and maps can hold a string more than once
+        this.WriteWithStringRefs(stream, options);
+        return;
+      }
       this.WriteTags(stream);
+      this.WriteItem(stream, options);
+    }
+
+    // Writes this array or map's untagged item from bytes it's already
+    // encoded in, if any: either those it was decoded from (see
+    // FromEncodedBytes) or those an immutable array or map keeps. Returns
+    // false if nothing was written.
+    private bool WriteEncodedItem(Stream stream, CBOREncodeOptions options) {
+      object item = this.ThisItem;
+      var lazy = item as CBORLazyContainer;
+      if (lazy != null) {
+        return IsDefaultEncoding(options) && lazy.WriteEncoded(stream);
+      }
+      var immutable = item as ImmutableContainer;
+      byte[] encoded = (immutable != null && IsDefaultEncoding(options)) ?
+        immutable.Encoded : null;
+      if (encoded == null) {
+        return false;
+      }
+      stream.Write(encoded, 0, encoded.Length);
+      return true;
+    }
+
+    // Gets the number of bytes WriteEncodedItem writes, or -1 if it
+    // writes nothing
+    private int GetEncodedItemLength(CBOREncodeOptions options) {
+      object item = this.ThisItem;
+      var lazy = item as CBORLazyContainer;
+      if (lazy != null) {
+        return IsDefaultEncoding(options) ? lazy.EncodedLength : -1;
+      }
+      var immutable = item as ImmutableContainer;
+      byte[] encoded = (immutable != null && IsDefaultEncoding(options)) ?
+        immutable.Encoded : null;
+      return (encoded == null) ? -1 : encoded.Length;
+    }
+
+    // Writes this object's untagged item, without its tags
+    private void WriteItem(Stream stream, CBOREncodeOptions options) {
       int type = this.ItemType;
       switch (type) {
         case CBORObjectTypeInteger: {
-          Write((long)this.ThisItem, stream);
+          Write(this.ThisLong, stream);
           break;
         }
         case CBORObjectTypeEInteger: {
           Write((EInteger)this.ThisItem, stream);
           break;
         }
-        case CBORObjectTypeByteString:
+        case CBORObjectTypeByteString: {
+          ArraySegment<byte> segment = this.AsByteSegment();
+          WritePositiveInt(2, segment.Count, stream);
+          stream.Write(segment.Array, segment.Offset, segment.Count);
+          break;
+        }
         case CBORObjectTypeTextStringUtf8: {
           byte[] arr = (byte[])this.ThisItem;
-          WritePositiveInt(
-            (this.Type == CBORType.ByteString) ? 2 : 3,
-            arr.Length,
-            stream);
+          WritePositiveInt(3, arr.Length, stream);
           stream.Write(arr, 0, arr.Length);
           break;
         }
@@ -7162,11 +7689,15 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
           break;
         }
         case CBORObjectTypeArray: {
-          WriteObjectArray(this.AsList(), stream, options);
+          if (!this.WriteEncodedItem(stream, options)) {
+            WriteObjectArray(this.AsList(), stream, options);
+          }
           break;
         }
         case CBORObjectTypeMap: {
-          WriteObjectMap(this.AsMap(), stream, options);
+          if (!this.WriteEncodedItem(stream, options)) {
+            WriteObjectMap(this.AsMap(), stream, options);
+          }
           break;
         }
         case CBORObjectTypeSimpleValue: {
@@ -7205,10 +7736,21 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       return new CBORObject(CBORObjectTypeByteString, bytes);
     }
 
+    internal static CBORObject FromByteStringSlice(
+      CBORByteStringSlice slice) {
+      return new CBORObject(CBORObjectTypeByteString, slice);
+    }
+
     internal static CBORObject FromRawUtf8(byte[] bytes) {
       return new CBORObject(CBORObjectTypeTextStringUtf8, bytes);
     }
 
+    internal static CBORObject FromLazyContainer(CBORLazyContainer lazy) {
+      return new CBORObject(
+          lazy.IsMap ? CBORObjectTypeMap : CBORObjectTypeArray,
+          lazy);
+    }
+
     internal static CBORObject FromRaw(string str) {
       #if DEBUG
       if (!CBORUtilities.CheckUtf16(str)) {
@@ -7224,11 +7766,6 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
 
     internal static CBORObject FromRaw(IDictionary<CBORObject, CBORObject>
       map) {
-      #if DEBUG
-      if (!(map is SortedDictionary<CBORObject, CBORObject>)) {
-        throw new InvalidOperationException();
-      }
-      #endif
       return new CBORObject(CBORObjectTypeMap, map);
     }
 
@@ -7242,6 +7779,17 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     internal static CBORObject GetFixedLengthObject(
       int firstbyte,
       byte[] data) {
+      return GetFixedLengthObject(firstbyte, data, 0);
+    }
+
+    // Same as the previous method, but the head byte is found at the
+    // given offset of the data. The byte at that offset is not itself
+    // read (the head byte is given by 'firstbyte'), so the offset may
+    // be one before the start of the array.
+    internal static CBORObject GetFixedLengthObject(
+      int firstbyte,
+      byte[] data,
+      int offset) {
       CBORObject fixedObj = FixedObjects[firstbyte];
       if (fixedObj != null) {
         return fixedObj;
@@ -7252,27 +7800,27 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
         long uadditional = 0;
         switch (firstbyte & 0x1f) {
           case 24:
-            uadditional = (int)(data[1] & (int)0xff);
+            uadditional = (int)(data[offset + 1] & (int)0xff);
             break;
           case 25:
-            uadditional = (data[1] & 0xffL) << 8;
-            uadditional |= (long)(data[2] & 0xffL);
+            uadditional = (data[offset + 1] & 0xffL) << 8;
+            uadditional |= (long)(data[offset + 2] & 0xffL);
             break;
           case 26:
-            uadditional = (data[1] & 0xffL) << 24;
-            uadditional |= (data[2] & 0xffL) << 16;
-            uadditional |= (data[3] & 0xffL) << 8;
-            uadditional |= (long)(data[4] & 0xffL);
+            uadditional = (data[offset + 1] & 0xffL) << 24;
+            uadditional |= (data[offset + 2] & 0xffL) << 16;
+            uadditional |= (data[offset + 3] & 0xffL) << 8;
+            uadditional |= (long)(data[offset + 4] & 0xffL);
             break;
           case 27:
-            uadditional = (data[1] & 0xffL) << 56;
-            uadditional |= (data[2] & 0xffL) << 48;
-            uadditional |= (data[3] & 0xffL) << 40;
-            uadditional |= (data[4] & 0xffL) << 32;
-            uadditional |= (data[5] & 0xffL) << 24;
-            uadditional |= (data[6] & 0xffL) << 16;
-            uadditional |= (data[7] & 0xffL) << 8;
-            uadditional |= (long)(data[8] & 0xffL);
+            uadditional = (data[offset + 1] & 0xffL) << 56;
+            uadditional |= (data[offset + 2] & 0xffL) << 48;
+            uadditional |= (data[offset + 3] & 0xffL) << 40;
+            uadditional |= (data[offset + 4] & 0xffL) << 32;
+            uadditional |= (data[offset + 5] & 0xffL) << 24;
+            uadditional |= (data[offset + 6] & 0xffL) << 16;
+            uadditional |= (data[offset + 7] & 0xffL) << 8;
+            uadditional |= (long)(data[offset + 8] & 0xffL);
             break;
           default:
             throw new CBORException("Unexpected data encountered");
@@ -7282,7 +7830,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
             if ((uadditional >> 63) == 0) {
               // use only if additional's top bit isn't set
               // (additional is a signed long)
-              return new CBORObject(CBORObjectTypeInteger, uadditional);
+              return FromObject(uadditional);
             } else {
               int low = unchecked((int)(uadditional & 0xffffffffL));
               int high = unchecked((int)((uadditional >> 32) & 0xffffffffL));
@@ -7292,9 +7840,7 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
             if ((uadditional >> 63) == 0) {
               // use only if additional's top bit isn't set
               // (additional is a signed long)
-              return new CBORObject(
-                  CBORObjectTypeInteger,
-                  -1 - uadditional);
+              return FromObject(-1 - uadditional);
             } else {
               int low = unchecked((int)(uadditional & 0xffffffffL));
               int high = unchecked((int)((uadditional >> 32) & 0xffffffffL));
@@ -7331,12 +7877,12 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       }
       if (majortype == 2) { // short byte string
         var ret = new byte[firstbyte - 0x40];
-        Array.Copy(data, 1, ret, 0, firstbyte - 0x40);
+        Array.Copy(data, offset + 1, ret, 0, firstbyte - 0x40);
         return new CBORObject(CBORObjectTypeByteString, ret);
       }
       if (majortype == 3) { // short text string
         var ret = new byte[firstbyte - 0x60];
-        Array.Copy(data, 1, ret, 0, firstbyte - 0x60);
+        Array.Copy(data, offset + 1, ret, 0, firstbyte - 0x60);
         if (!CBORUtilities.CheckUtf8(ret)) {
           throw new CBORException("Invalid encoding");
         }
@@ -7358,11 +7904,31 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     }
 
     private IList<CBORObject> AsList() {
-      return (IList<CBORObject>)this.ThisItem;
+      object item = this.ThisItem;
+      var lazy = item as CBORLazyContainer;
+      if (lazy != null) {
+        return lazy.GetObject().AsList();
+      }
+      var immutable = item as ImmutableContainer;
+      return (immutable != null) ? immutable.List : (IList<CBORObject>)item;
+    }
+
+    private ArraySegment<byte> AsByteSegment() {
+      object item = this.ThisItem;
+      var slice = item as CBORByteStringSlice;
+      return (slice != null) ? slice.Segment :
+        new ArraySegment<byte>((byte[])item);
     }
 
     private IDictionary<CBORObject, CBORObject> AsMap() {
-      return (IDictionary<CBORObject, CBORObject>)this.ThisItem;
+      object item = this.ThisItem;
+      var lazy = item as CBORLazyContainer;
+      if (lazy != null) {
+        return lazy.GetObject().AsMap();
+      }
+      var immutable = item as ImmutableContainer;
+      return (immutable != null) ? immutable.Map :
+        (IDictionary<CBORObject, CBORObject>)item;
     }
 
     private static bool CBORArrayEquals(
@@ -7534,8 +8100,8 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
 
     private static string GetOptimizedStringIfShortAscii(
       byte[] data,
-      int offset) {
-      int length = data.Length;
+      int offset,
+      int length) {
       if (length > offset) {
         var nextbyte = (int)(data[offset] & (int)0xff);
         if (nextbyte >= 0x60 && nextbyte < 0x78) {
@@ -7629,32 +8195,6 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       };
     }
 
-    private static byte[] GetPositiveIntBytes(int type, int value) {
-      if (value < 0) {
-        throw new ArgumentException("value(" + value + ") is less than " +
-          "0");
-      }
-      if (value < 24) {
-        return new[] { (byte)((byte)value | (byte)(type << 5)) };
-      }
-      if (value <= 0xff) {
-        return new[] {
-          (byte)(24 | (type << 5)), (byte)(value & 0xff),
-        };
-      }
-      if (value <= 0xffff) {
-        return new[] {
-          (byte)(25 | (type << 5)),
-          (byte)((value >> 8) & 0xff), (byte)(value & 0xff),
-        };
-      }
-      return new[] {
-        (byte)(26 | (type << 5)), (byte)((value >> 24) & 0xff),
-        (byte)((value >> 16) & 0xff), (byte)((value >> 8) & 0xff),
-        (byte)(value & 0xff),
-      };
-    }
-
     // Initialize fixed values for certain
     // head bytes
     private static CBORObject[] InitializeFixedObjects() {
@@ -7673,11 +8213,24 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
       for (int i = 0xe0; i < 0xf8; ++i) {
         fixedObjects[i] = new CBORObject(
           CBORObjectTypeSimpleValue,
-          (int)(i - 0xe0));
+          (long)(i - 0xe0));
       }
       return fixedObjects;
     }
 
+    // Initializes the cached integers from -256 through 255, sharing those
+    // in FixedObjects
+    private static CBORObject[] InitializeSmallIntegers() {
+      var smallIntegers = new CBORObject[512];
+      for (var i = 0; i < smallIntegers.Length; ++i) {
+        int value = i - 256;
+        smallIntegers[i] = (value >= 0 && value < 24) ? FixedObjects[value] :
+          ((value >= -24 && value < 0) ? FixedObjects[0x20 - (value + 1)] :
+          new CBORObject(CBORObjectTypeInteger, (long)value));
+      }
+      return smallIntegers;
+    }
+
     private static int ListCompare(
       IList<CBORObject> listA,
       IList<CBORObject> listB) {
@@ -7853,15 +8406,20 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
         outputStream.WriteByte(0xf6);
       } else {
         int type = child.ItemType;
-        if (type == CBORObjectTypeArray) {
-          stack = PushObject(stack, parentThisItem, child.ThisItem);
+        if (child.GetEncodedItemLength(options) >= 0) {
+          // Written from bytes already encoded
+          child.WriteTo(outputStream, options);
+        } else if (type == CBORObjectTypeArray) {
+          IList<CBORObject> list = child.AsList();
+          stack = PushObject(stack, parentThisItem, list);
           child.WriteTags(outputStream);
-          WriteObjectArray(child.AsList(), outputStream, stack, options);
+          WriteObjectArray(list, outputStream, stack, options);
           stack.RemoveAt(stack.Count - 1);
         } else if (type == CBORObjectTypeMap) {
-          stack = PushObject(stack, parentThisItem, child.ThisItem);
+          IDictionary<CBORObject, CBORObject> map = child.AsMap();
+          stack = PushObject(stack, parentThisItem, map);
           child.WriteTags(outputStream);
-          WriteObjectMap(child.AsMap(), outputStream, stack, options);
+          WriteObjectMap(map, outputStream, stack, options);
           stack.RemoveAt(stack.Count - 1);
         } else {
           child.WriteTo(outputStream, options);
@@ -7922,15 +8480,44 @@ public sealed partial class CBORObject : IComparable<CBORObject>,
     }
 
     private static int WritePositiveInt(int type, int value, Stream s) {
-      byte[] bytes = GetPositiveIntBytes(type, value);
-      s.Write(bytes, 0, bytes.Length);
-      return bytes.Length;
+      return WritePositiveInt64(type, value, s);
     }
 
     private static int WritePositiveInt64(int type, long value, Stream s) {
-      byte[] bytes = GetPositiveInt64Bytes(type, value);
-      s.Write(bytes, 0, bytes.Length);
-      return bytes.Length;
+      if (value < 0) {
+        throw new ArgumentException("value(" + value + ") is less than " +
+          "0");
+      }
+      int typeBits = type << 5;
+      if (value < 24) {
+        s.WriteByte((byte)(typeBits | (int)value));
+        return 1;
+      }
+      if (value <= 0xffL) {
+        return WriteHead(s, typeBits | 24, value, 1);
+      }
+      if (value <= 0xffffL) {
+        return WriteHead(s, typeBits | 25, value, 2);
+      }
+      if (value <= 0xffffffffL) {
+        return WriteHead(s, typeBits | 26, value, 4);
+      }
+      return WriteHead(s, typeBits | 27, value, 8);
+    }
+
+    // Writes a head byte followed by the given number of lowest bytes of
+    // a value in big-endian order, one byte at a time, so that no byte
+    // array is allocated for them
+    private static int WriteHead(
+      Stream s,
+      int headByte,
+      long value,
+      int byteCount) {
+      s.WriteByte((byte)headByte);
+      for (int shift = (byteCount - 1) * 8; shift >= 0; shift -= 8) {
+        s.WriteByte((byte)((value >> shift) & 0xffL));
+      }
+      return byteCount + 1;
     }
 
     private static void WriteStreamedString(string str, Stream stream) {
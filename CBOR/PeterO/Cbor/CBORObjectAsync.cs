@@ -0,0 +1,244 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+#if !NET20 && !NET40
+using System;
+using System.Collections.Generic;
+using System.IO;
+using System.Threading;
+using System.Threading.Tasks;
+
+namespace PeterO.Cbor {
+  // Contains methods for reading and writing CBOR objects
+  // asynchronously.
+  public sealed partial class CBORObject {
+    /// <summary>Reads an object in CBOR format from a data stream
+    /// asynchronously. This method will read from the stream until the
+    /// end of the CBOR object is reached or an error occurs, whichever
+    /// happens first.</summary>
+    /// <param name='stream'>A readable data stream.</param>
+    /// <returns>A task whose result is the CBOR object that was
+    /// read.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> is null.</exception>
+    public static Task<CBORObject> ReadAsync(Stream stream) {
+      return ReadAsync(
+          stream,
+          CBOREncodeOptions.Default,
+          CancellationToken.None);
+    }
+
+    /// <summary>Reads an object in CBOR format from a data stream
+    /// asynchronously, using the specified options to control the
+    /// decoding process. This method will read from the stream until the
+    /// end of the CBOR object is reached or an error occurs, whichever
+    /// happens first. Bytes are read from the stream only while the end of
+    /// the CBOR object isn't yet known, so that no thread is blocked while
+    /// waiting for more data. If the stream doesn't support seeking, no
+    /// more bytes than the CBOR object needs are read from the stream;
+    /// otherwise, the stream may be read ahead, and then positioned just
+    /// after the CBOR object.</summary>
+    /// <param name='stream'>A readable data stream.</param>
+    /// <param name='options'>Specifies the options to use when decoding
+    /// the CBOR data stream. See CBOREncodeOptions for more
+    /// information.</param>
+    /// <param name='cancellationToken'>A token to monitor for
+    /// cancellation requests.</param>
+    /// <returns>A task whose result is the CBOR object that was read, or
+    /// null if the AllowEmpty property of <paramref name='options'/> is
+    /// true and the stream has no more data.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> or <paramref name='options'/> is
+    /// null.</exception>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data.</exception>
+    public static async Task<CBORObject> ReadAsync(
+      Stream stream,
+      CBOREncodeOptions options,
+      CancellationToken cancellationToken) {
+      if (stream == null) {
+        throw new ArgumentNullException(nameof(stream));
+      }
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      bool seekable = stream.CanSeek;
+      var reader = new AsyncItemReader(stream, seekable, options);
+      CBORObject obj;
+      try {
+        obj = await reader.ReadItemAsync(cancellationToken)
+          .ConfigureAwait(false);
+        if (seekable) {
+          reader.ReturnUnreadBytes();
+        }
+      } catch (IOException ex) {
+        throw new CBORException("I/O error occurred.", ex);
+      }
+      if (obj == null && !options.AllowEmpty) {
+        throw new CBORException("Premature end of data");
+      }
+      return obj;
+    }
+
+    /// <summary>Reads a sequence of objects in CBOR format from a data
+    /// stream asynchronously. This method will read CBOR objects from the
+    /// stream until the end of the stream is reached or an error occurs,
+    /// whichever happens first.</summary>
+    /// <param name='stream'>A readable data stream.</param>
+    /// <param name='options'>Specifies the options to use when decoding
+    /// the CBOR data stream. See CBOREncodeOptions for more
+    /// information.</param>
+    /// <param name='cancellationToken'>A token to monitor for
+    /// cancellation requests.</param>
+    /// <returns>A task whose result is an array containing the CBOR
+    /// objects that were read from the data stream. The array is empty if
+    /// there is no unread data in the stream.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> or <paramref name='options'/> is
+    /// null.</exception>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data, including if the last CBOR object was
+    /// read only partially.</exception>
+    public static async Task<CBORObject[]> ReadSequenceAsync(
+      Stream stream,
+      CBOREncodeOptions options,
+      CancellationToken cancellationToken) {
+      if (stream == null) {
+        throw new ArgumentNullException(nameof(stream));
+      }
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      var cborList = new List<CBORObject>();
+      // NOTE: The whole stream is read, so the stream can be read
+      // ahead in large blocks
+      var reader = new AsyncItemReader(stream, true, options);
+      while (true) {
+        CBORObject obj;
+        try {
+          obj = await reader.ReadItemAsync(cancellationToken)
+            .ConfigureAwait(false);
+        } catch (IOException ex) {
+          throw new CBORException("I/O error occurred.", ex);
+        }
+        if (obj == null) {
+          break;
+        }
+        cborList.Add(obj);
+      }
+      return (CBORObject[])cborList.ToArray();
+    }
+
+    /// <summary>Writes this CBOR object to a data stream
+    /// asynchronously.</summary>
+    /// <param name='stream'>A writable data stream.</param>
+    /// <returns>A task that completes when the CBOR object was
+    /// written.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> is null.</exception>
+    public Task WriteToAsync(Stream stream) {
+      return this.WriteToAsync(
+          stream,
+          CBOREncodeOptions.Default,
+          CancellationToken.None);
+    }
+
+    /// <summary>Writes this CBOR object to a data stream asynchronously,
+    /// using the specified options for encoding the data to CBOR format.
+    /// The CBOR object is encoded in memory first, then written to the
+    /// stream with a single asynchronous write.</summary>
+    /// <param name='stream'>A writable data stream.</param>
+    /// <param name='options'>Options for encoding the data to
+    /// CBOR.</param>
+    /// <param name='cancellationToken'>A token to monitor for
+    /// cancellation requests.</param>
+    /// <returns>A task that completes when the CBOR object was
+    /// written.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> or <paramref name='options'/> is
+    /// null.</exception>
+    public Task WriteToAsync(
+      Stream stream,
+      CBOREncodeOptions options,
+      CancellationToken cancellationToken) {
+      if (stream == null) {
+        throw new ArgumentNullException(nameof(stream));
+      }
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      byte[] bytes = this.EncodeToBytes(options);
+      return stream.WriteAsync(bytes, 0, bytes.Length, cancellationToken);
+    }
+
+    // Reads one CBOR object at a time from a stream, reading
+    // asynchronously until all the object's bytes have arrived
+    private sealed class AsyncItemReader {
+      private const int ReadAheadSize = 8192;
+      // Largest amount read at a time, so that the decoder's buffer grows
+      // only as data actually arrives
+      private const int MaxReadSize = 0x10000;
+
+      private readonly Stream stream;
+      private readonly bool readAhead;
+      private readonly CBORIncrementalDecoder decoder;
+      private byte[] readBuffer;
+
+      public AsyncItemReader(
+        Stream stream,
+        bool readAhead,
+        CBOREncodeOptions options) {
+        this.stream = stream;
+        this.readAhead = readAhead;
+        this.decoder = new CBORIncrementalDecoder(options);
+        this.readBuffer = new byte[readAhead ? ReadAheadSize : 16];
+      }
+
+      // Reads and decodes the next CBOR object. Returns null if the stream
+      // ends before the object begins.
+      public async Task<CBORObject> ReadItemAsync(
+        CancellationToken cancellationToken) {
+        while (true) {
+          CBORObject obj;
+          if (this.decoder.TryGetNext(out obj)) {
+            return obj;
+          }
+          var toRead = (int)Math.Min(this.decoder.BytesNeeded, MaxReadSize);
+          if (this.readAhead) {
+            toRead = Math.Max(toRead, ReadAheadSize);
+          }
+          if (this.readBuffer.Length < toRead) {
+            this.readBuffer = new byte[toRead];
+          }
+          int read = await this.stream.ReadAsync(
+              this.readBuffer,
+              0,
+              toRead,
+              cancellationToken).ConfigureAwait(false);
+          if (read <= 0) {
+            if (this.decoder.BufferedCount == 0) {
+              return null;
+            }
+            throw new CBORException("Premature end of data");
+          }
+          this.decoder.Feed(this.readBuffer, 0, read);
+        }
+      }
+
+      // Seeks the stream back over bytes read ahead but not decoded
+      public void ReturnUnreadBytes() {
+        int unread = this.decoder.BufferedCount;
+        if (unread > 0) {
+          this.stream.Seek(-unread, SeekOrigin.Current);
+        }
+      }
+    }
+  }
+}
+#endif
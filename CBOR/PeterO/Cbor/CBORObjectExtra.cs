@@ -253,7 +253,7 @@ public sealed partial class CBORObject {
     }
     internal decimal AsDecimalLegacy() {
       return (this.ItemType == CBORObjectTypeInteger) ?
-((decimal)(long)this.ThisItem) : ((this.HasOneTag(30) ||
+((decimal)this.ThisLong) : ((this.HasOneTag(30) ||
 
             this.HasOneTag(270)) ? (decimal)this.ToObject<ERational>() :
           (decimal)this.ToObject<EDecimal>());
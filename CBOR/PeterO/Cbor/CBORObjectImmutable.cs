@@ -0,0 +1,151 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using System.Collections.Generic;
+using System.Collections.ObjectModel;
+
+namespace PeterO.Cbor {
+  // Contains methods for making read-only copies of CBOR objects
+  public sealed partial class CBORObject {
+    // Greatest nesting depth of arrays and maps AsImmutable copies (the
+    // same as CalcEncodedSize allows)
+    private const int MaxImmutableDepth = 1000;
+
+    /// <summary>Gets a value indicating whether this CBOR object can't be
+    /// changed, which is the case if it's an array or map made by the
+    /// <c>AsImmutable</c> method (or is in one), or if it's neither an
+    /// array nor a map.</summary>
+    /// <value><c>true</c> if this CBOR object can't be changed; otherwise,
+    /// <c>false</c>.</value>
+    public bool IsImmutable {
+      get {
+        int type = this.ItemType;
+        return (type != CBORObjectTypeArray && type != CBORObjectTypeMap) ||
+          this.ThisItem is ImmutableContainer;
+      }
+    }
+
+    /// <summary>
+    /// <para>Gets a read-only copy of this CBOR object, in which arrays
+    /// and maps, including those nested in it, can't be changed. Methods
+    /// that would change one of them, such as <c>Add</c>, <c>Set</c>, and
+    /// <c>Remove</c>, throw NotSupportedException instead. Changes to this
+    /// object don't affect the copy, and the copy can be read from more
+    /// than one thread at once.</para>
+    /// <para>Because arrays and maps in the copy can't change, each of
+    /// them computes its hash code only once, and keeps its encoded bytes
+    /// after the first time <c>EncodeToBytes</c> is called on it (with
+    /// options that don't change how it's encoded), so that later calls
+    /// to <c>GetHashCode</c>, <c>EncodeToBytes</c>, and <c>WriteTo</c>
+    /// are fast, even for an object containing that array or
+    /// map.</para></summary>
+    /// <returns>A read-only copy of this CBOR object, or this object if
+    /// it's already read-only (see <c>IsImmutable</c>).</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>The CBOR object has an
+    /// extremely deep level of nesting, including if the CBOR object is or
+    /// has an array or map that includes itself.</exception>
+    /// <remarks>Byte strings in the copy share their bytes with those in
+    /// this object; as with any CBOR object, the byte arrays returned by
+    /// <c>GetByteString</c> should not be changed.</remarks>
+    public CBORObject AsImmutable() {
+      return this.AsImmutable(0);
+    }
+
+    private CBORObject AsImmutable(int depth) {
+      if (depth > MaxImmutableDepth) {
+        throw new CBORException("Too deeply nested");
+      }
+      switch (this.itemtypeValue) {
+        case CBORObjectTypeTagged: {
+          CBORObject item = ((CBORObject)this.itemValue).AsImmutable(depth);
+          return ((object)item == this.itemValue) ? this :
+            new CBORObject(item, this.tagLow, this.tagHigh);
+        }
+        case CBORObjectTypeArray: {
+          if (this.itemValue is ImmutableContainer) {
+            return this;
+          }
+          IList<CBORObject> list = this.AsList();
+          var newList = new List<CBORObject>(list.Count);
+          foreach (CBORObject item in list) {
+            newList.Add(((object)item == null) ? null :
+              item.AsImmutable(depth + 1));
+          }
+          return new CBORObject(
+              CBORObjectTypeArray,
+              new ImmutableContainer(newList));
+        }
+        case CBORObjectTypeMap: {
+          if (this.itemValue is ImmutableContainer) {
+            return this;
+          }
+          IDictionary<CBORObject, CBORObject> map = this.AsMap();
+          IDictionary<CBORObject, CBORObject> newMap =
+            (map is SortedDictionary<CBORObject, CBORObject>) ?
+            new SortedDictionary<CBORObject, CBORObject>() :
+            PropertyMap.NewOrderedDict();
+          foreach (KeyValuePair<CBORObject, CBORObject> entry in map) {
+            newMap.Add(
+              entry.Key.AsImmutable(depth + 1),
+              ((object)entry.Value == null) ? null :
+              entry.Value.AsImmutable(depth + 1));
+          }
+          return new CBORObject(
+              CBORObjectTypeMap,
+              new ImmutableContainer(newMap));
+        }
+        default:
+          return this;
+      }
+    }
+
+    // Gets whether the given options encode arrays and maps the same
+    // way as the default options, so that bytes kept by an immutable
+    // array or map, or by one from FromEncodedBytes, can be written with
+    // them
+    private static bool IsDefaultEncoding(CBOREncodeOptions options) {
+      return !options.UseIndefLengthStrings && !options.Float64 &&
+        !options.StringRefs && !options.Ctap2Canonical;
+    }
+
+    // Value of an array or map made by AsImmutable: its read-only list or
+    // map, its hash code, and, once they're needed, its encoded bytes
+    private sealed class ImmutableContainer {
+      public readonly IList<CBORObject> List;
+      public readonly IDictionary<CBORObject, CBORObject> Map;
+      public readonly int ItemHashCode;
+      // NOTE: If more than one thread encodes the array or map at once,
+      // each stores the same bytes here
+      private volatile byte[] encoded;
+
+      public ImmutableContainer(IList<CBORObject> list) {
+        this.List = new ReadOnlyCollection<CBORObject>(list);
+        this.ItemHashCode = CBORArrayHashCode(list);
+      }
+
+      public ImmutableContainer(IDictionary<CBORObject, CBORObject> map) {
+        this.Map = PropertyMap.ReadOnlyDict(map);
+        this.ItemHashCode = CBORMapHashCode(map);
+      }
+
+      // Bytes the array or map is encoded in with the default options, or
+      // null if they weren't needed yet
+      public byte[] Encoded {
+        get {
+          return this.encoded;
+        }
+
+        set {
+          this.encoded = value;
+        }
+      }
+    }
+  }
+}
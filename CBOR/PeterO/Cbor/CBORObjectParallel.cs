@@ -0,0 +1,238 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using System.Collections.Generic;
+#if !NET20
+using System.Threading;
+using System.Threading.Tasks;
+#endif
+
+namespace PeterO.Cbor {
+  // Contains methods for decoding CBOR sequences on more than one
+  // thread.
+  public sealed partial class CBORObject {
+    // Number of CBOR objects a thread claims at a time
+    private const int ParallelBatchSize = 64;
+
+    /// <summary>Generates a sequence of CBOR objects from an array of
+    /// CBOR-encoded bytes, decoding the CBOR objects on more than one
+    /// thread at once.</summary>
+    /// <param name='data'>A byte array in which any number of CBOR objects
+    /// (including zero) are encoded, one after the other. Can be empty,
+    /// but cannot be null.</param>
+    /// <param name='options'>Specifies options to control how the CBOR
+    /// objects are decoded. See
+    /// <see cref='PeterO.Cbor.CBOREncodeOptions'/> for more information.
+    /// In this method, the AllowEmpty property is treated as always set
+    /// regardless of that value as specified in this parameter.</param>
+    /// <param name='maxDegreeOfParallelism'>The greatest number of threads
+    /// to decode CBOR objects on at once. Must be 1 or greater.</param>
+    /// <returns>An array of CBOR objects decoded from the given byte
+    /// array, in the order they appear in it. Returns an empty array if
+    /// <paramref name='data'/> is empty.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data. This includes cases where the last
+    /// CBOR object in the data was read only partly.</exception>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null, or the parameter <paramref name='options'/>
+    /// is null.</exception>
+    /// <exception cref='ArgumentException'>The parameter <paramref
+    /// name='maxDegreeOfParallelism'/> is less than 1.</exception>
+    public static CBORObject[] DecodeSequenceFromBytesParallel(
+      byte[] data,
+      CBOREncodeOptions options,
+      int maxDegreeOfParallelism) {
+      if (data == null) {
+        throw new ArgumentNullException(nameof(data));
+      }
+      return DecodeSequenceFromBytesParallel(
+          data,
+          0,
+          data.Length,
+          options,
+          maxDegreeOfParallelism);
+    }
+
+    /// <summary>
+    /// <para>Generates a sequence of CBOR objects from a portion of an
+    /// array of CBOR-encoded bytes, decoding the CBOR objects on more than
+    /// one thread at once.</para>
+    /// <para>First, the portion is scanned to find where each CBOR object
+    /// begins and ends; only the heads of data items and the lengths of
+    /// strings, arrays, and maps are examined in this step. Then the CBOR
+    /// objects are decoded on up to the given number of threads. This
+    /// method returns the same results as DecodeSequenceFromBytes, and if
+    /// more than one CBOR object is invalid, the error thrown is the one
+    /// for the first of them, thrown as a CBORException on the calling
+    /// thread. Other exceptions, such as OutOfMemoryException, are not
+    /// caught; one thrown while decoding on another thread is thrown
+    /// wrapped in an AggregateException.</para></summary>
+    /// <param name='data'>A byte array, the specified portion of which
+    /// encodes any number of CBOR objects (including zero), one after the
+    /// other.</param>
+    /// <param name='offset'>An index, starting at 0, showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion of
+    /// <paramref name='data'/> (but not more than <paramref
+    /// name='data'/> 's length).</param>
+    /// <param name='options'>Specifies options to control how the CBOR
+    /// objects are decoded. See
+    /// <see cref='PeterO.Cbor.CBOREncodeOptions'/> for more information.
+    /// In this method, the AllowEmpty property is treated as always set
+    /// regardless of that value as specified in this parameter.</param>
+    /// <param name='maxDegreeOfParallelism'>The greatest number of threads
+    /// to decode CBOR objects on at once. Must be 1 or greater. If 1, the
+    /// CBOR objects are decoded on the calling thread.</param>
+    /// <returns>An array of CBOR objects decoded from the given portion of
+    /// the byte array, in the order they appear in it. Returns an empty
+    /// array if <paramref name='count'/> is 0.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data. This includes cases where the last
+    /// CBOR object in the data was read only partly.</exception>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null, or the parameter <paramref name='options'/>
+    /// is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>, or <paramref
+    /// name='maxDegreeOfParallelism'/> is less than 1.</exception>
+    /// <remarks>In the .NET Framework 2.0 version of this library, the
+    /// CBOR objects are always decoded on the calling thread.</remarks>
+    public static CBORObject[] DecodeSequenceFromBytesParallel(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options,
+      int maxDegreeOfParallelism) {
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      CheckByteArrayPortion(data, offset, count);
+      if (maxDegreeOfParallelism < 1) {
+        throw new ArgumentException("maxDegreeOfParallelism (" +
+          maxDegreeOfParallelism + ") is less than 1");
+      }
+      // Find where each CBOR object begins
+      var starts = new List<int>();
+      var scanner = new CBORItemScanner(options.MaxNestingDepth);
+      var pos = 0;
+      while (pos < count) {
+        starts.Add(offset + pos);
+        long length = scanner.Scan(data, offset + pos, count - pos);
+        // NOTE: If the last CBOR object is incomplete, it's treated as
+        // extending to the end of the portion, so that decoding it fails
+        pos = (length < 0) ? count : pos + (int)length;
+      }
+      starts.Add(offset + count);
+      var decoder = new ParallelSequenceDecoder(
+        data,
+        starts,
+        options);
+      #if NET20
+      decoder.Run();
+      #else
+      int threads = Math.Min(
+          maxDegreeOfParallelism,
+          (decoder.Count + ParallelBatchSize - 1) / ParallelBatchSize);
+      if (threads <= 1) {
+        decoder.Run();
+      } else {
+        var tasks = new Task[threads - 1];
+        for (var i = 0; i < tasks.Length; ++i) {
+          tasks[i] = Task.Factory.StartNew(decoder.Run);
+        }
+        // The calling thread also decodes CBOR objects
+        decoder.Run();
+        Task.WaitAll(tasks);
+      }
+      #endif
+      return decoder.GetResults();
+    }
+
+    // Decodes the CBOR objects in a sequence whose boundaries are known;
+    // Run can be called on several threads at once
+    private sealed class ParallelSequenceDecoder {
+      private readonly byte[] data;
+      private readonly IList<int> starts;
+      private readonly CBOREncodeOptions options;
+      private readonly CBORInternTable internTable;
+      private readonly CBORObject[] results;
+      private readonly CBORException[] errors;
+      private int nextIndex;
+
+      public ParallelSequenceDecoder(
+        byte[] data,
+        IList<int> starts,
+        CBOREncodeOptions options) {
+        this.data = data;
+        this.starts = starts;
+        this.options = options;
+        // NOTE: The intern table can be shared among threads
+        this.internTable = options.InternStrings ? new CBORInternTable() :
+          null;
+        this.results = new CBORObject[starts.Count - 1];
+        this.errors = new CBORException[starts.Count - 1];
+      }
+
+      public int Count {
+        get {
+          return this.results.Length;
+        }
+      }
+
+      public void Run() {
+        while (true) {
+          #if NET20
+          int begin = this.nextIndex;
+          this.nextIndex += ParallelBatchSize;
+          #else
+          int begin = Interlocked.Add(
+              ref this.nextIndex,
+              ParallelBatchSize) - ParallelBatchSize;
+          #endif
+          if (begin >= this.results.Length) {
+            return;
+          }
+          int end = Math.Min(begin + ParallelBatchSize, this.results.Length);
+          for (int i = begin; i < end; ++i) {
+            int start = this.starts[i];
+            try {
+              this.results[i] = DecodeFromBytes(
+                  this.data,
+                  start,
+                  this.starts[i + 1] - start,
+                  this.options,
+                  this.internTable);
+            } catch (CBORException ex) {
+              // NOTE: Kept rather than thrown, so that it doesn't reach
+              // the caller wrapped in an AggregateException, and so that
+              // the error thrown is the one for the first CBOR object
+              // that couldn't be decoded, as in DecodeSequenceFromBytes
+              this.errors[i] = ex;
+            }
+          }
+        }
+      }
+
+      // Gets the decoded CBOR objects, or throws the error for the first
+      // CBOR object that couldn't be decoded
+      public CBORObject[] GetResults() {
+        foreach (CBORException ex in this.errors) {
+          if (ex != null) {
+            throw new CBORException(ex.Message, ex);
+          }
+        }
+        return this.results;
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using System.Collections.Generic;
+using System.IO;
+using PeterO;
+
+namespace PeterO.Cbor {
+  // Contains methods for writing CBOR objects with string references
+  // (see CBOREncodeOptions.StringRefs)
+  public sealed partial class CBORObject {
+    // Writes this array or map, and its tags, with repeated strings in it
+    // replaced with string references
+    private void WriteWithStringRefs(Stream stream, CBOREncodeOptions options) {
+      var writer = new StringRefWriter(stream, options);
+      if (!this.HasTag(256)) {
+        // Tag 256: String namespace
+        stream.WriteByte(0xd9);
+        stream.WriteByte(0x01);
+        stream.WriteByte(0x00);
+        writer.Write(this, true);
+      } else {
+        writer.Write(this, false);
+      }
+    }
+
+    // Writes CBOR objects in the same order they're read, keeping track
+    // of the strings a decoder gives an index to, so that each later
+    // copy of such a string can be written as a reference to it
+    private sealed class StringRefWriter {
+      private readonly Stream stream;
+      private readonly CBOREncodeOptions options;
+      // Indices of strings written so far, one table for each namespace
+      // (tag 256) the current object is in
+      private readonly List<Dictionary<CBORObject, int>> namespaces;
+      // Arrays and maps being written, to detect circular references
+      private readonly List<object> stack;
+
+      public StringRefWriter(Stream stream, CBOREncodeOptions options) {
+        this.stream = stream;
+        this.options = options;
+        this.namespaces = new List<Dictionary<CBORObject, int>>();
+        this.stack = new List<object>();
+      }
+
+      public void Write(CBORObject obj, bool newNamespace) {
+        // NOTE: Only tags come between a tag 256 and the item it
+        // applies to, so the namespace can start before the tags
+        newNamespace |= obj.HasTag(256);
+        if (newNamespace) {
+          this.namespaces.Add(new Dictionary<CBORObject, int>());
+        }
+        obj.WriteTags(this.stream);
+        CBORObject item = obj;
+        while (item.IsTagged) {
+          item = (CBORObject)item.itemValue;
+        }
+        switch (item.itemtypeValue) {
+          case CBORObjectTypeByteString:
+          case CBORObjectTypeTextString:
+          case CBORObjectTypeTextStringUtf8:
+            this.WriteString(item);
+            break;
+          case CBORObjectTypeArray: {
+            IList<CBORObject> list = item.AsList();
+            this.Push(list);
+            WritePositiveInt(4, list.Count, this.stream);
+            foreach (CBORObject child in list) {
+              this.Write(child, false);
+            }
+            this.stack.RemoveAt(this.stack.Count - 1);
+            break;
+          }
+          case CBORObjectTypeMap: {
+            IDictionary<CBORObject, CBORObject> map = item.AsMap();
+            this.Push(map);
+            WritePositiveInt(5, map.Count, this.stream);
+            foreach (KeyValuePair<CBORObject, CBORObject> entry in map) {
+              this.Write(entry.Key, false);
+              this.Write(entry.Value, false);
+            }
+            this.stack.RemoveAt(this.stack.Count - 1);
+            break;
+          }
+          default:
+            item.WriteItem(this.stream, this.options);
+            break;
+        }
+        if (newNamespace) {
+          this.namespaces.RemoveAt(this.namespaces.Count - 1);
+        }
+      }
+
+      private void Push(object container) {
+        foreach (object o in this.stack) {
+          if (o == container) {
+            throw new ArgumentException("Circular reference in data" +
+              " structure");
+          }
+        }
+        this.stack.Add(container);
+      }
+
+      // Writes an untagged text or byte string, or a reference to it if
+      // an equal string of the same type was already given an index
+      private void WriteString(CBORObject str) {
+        Dictionary<CBORObject, int> strings =
+          this.namespaces[this.namespaces.Count - 1];
+        int index;
+        if (strings.TryGetValue(str, out index)) {
+          // Tag 25: String reference
+          this.stream.WriteByte(0xd8);
+          this.stream.WriteByte(0x19);
+          WritePositiveInt(0, index, this.stream);
+          return;
+        }
+        long length;
+        if (str.itemtypeValue == CBORObjectTypeTextString) {
+          // NOTE: Strings are always written with a definite length,
+          // since a decoder doesn't give an index to other strings
+          var text = (string)str.itemValue;
+          length = DataUtilities.GetUtf8Length(text, true);
+          WritePositiveInt64(3, length, this.stream);
+          DataUtilities.WriteUtf8(text, this.stream, true);
+        } else if (str.itemtypeValue == CBORObjectTypeTextStringUtf8) {
+          var utf8 = (byte[])str.itemValue;
+          length = utf8.Length;
+          WritePositiveInt(3, utf8.Length, this.stream);
+          this.stream.Write(utf8, 0, utf8.Length);
+        } else {
+          ArraySegment<byte> segment = str.AsByteSegment();
+          length = segment.Count;
+          WritePositiveInt(2, segment.Count, this.stream);
+          this.stream.Write(segment.Array, segment.Offset, segment.Count);
+        }
+        if (StringRefs.IsReferable(strings.Count, length)) {
+          strings.Add(str, strings.Count);
+        }
+      }
+    }
+  }
+}
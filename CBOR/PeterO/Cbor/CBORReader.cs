@@ -10,7 +10,6 @@
 using System;
 using System.Collections.Generic;
 using System.IO;
-using System.Text;
 using PeterO;
 using PeterO.Numbers;
 
@@ -18,20 +17,285 @@ namespace PeterO.Cbor {
   internal class CBORReader {
     private readonly Stream stream;
     private readonly CBOREncodeOptions options;
+    // Input buffer. When decoding from a byte array, this is the
+    // array itself and bytes are read directly from it through a
+    // cursor. When decoding from a stream, this is a buffer that is
+    // refilled from the stream as needed.
+    private byte[] data;
+    private readonly int dataStart;
+    private int dataEnd;
+    private int dataPos;
+    // Number of stream bytes consumed before the start of the buffer
+    private long basePosition;
+    // If true, the stream is read ahead in large blocks; otherwise,
+    // no more bytes are read from the stream than needed.
+    private readonly bool readAhead;
+    // Number of arrays, maps, and tags the data item being read is
+    // nested in
     private int depth;
+    private readonly int maxDepth;
+    // Arrays, maps, and tags being read whose items aren't all read yet,
+    // innermost last; frames past frameCount are kept for reuse
+    private Frame[] frames;
+    private int frameCount;
     private StringRefs stringRefs;
-    private bool hasSharableObjects;
+    // Objects marked as shareable (tag 28) so far, or null if none
+    private SharedRefs sharedRefs;
+    // Index of the shared object slot that the next data item read
+    // fills, or -1 if the next item isn't shareable
+    private int pendingShareIndex = -1;
+    // If true, arrays and maps are decoded lazily (see
+    // CBOREncodeOptions.Lazy)
+    private readonly bool lazy;
+    // If true, the next array or map is decoded even in lazy mode
+    private bool eagerNext;
+    // End offsets of the arrays and maps in the data, keyed by their
+    // start offsets, found when a lazily decoded array or map was first
+    // skipped; or null if none were found yet. Not changed once built,
+    // since lazily decoded arrays and maps share it.
+    private Dictionary<int, int> lazyEnds;
+    // If true, byte strings refer to the input byte array (see
+    // CBOREncodeOptions.ShareByteStrings)
+    private readonly bool shareByteStrings;
+    // Table of short text strings shared among decoded objects, or null
+    // if text strings aren't interned (see CBOREncodeOptions.InternStrings)
+    private CBORInternTable internTable;
+
+    private const int FrameArray = 0;
+    private const int FrameMap = 1;
+    private const int FrameTag = 2;
+    private const int FrameShareable = 3;
+    private const int FrameSharedRef = 4;
+
+    // An array, map, or tag being read
+    private sealed class Frame {
+      public int Kind;
+      // Number of items (or map entries) left, or -1 if the array or
+      // map has indefinite length
+      public long Remaining;
+      public CBORObject Container;
+      public IList<CBORObject> List;
+      public IDictionary<CBORObject, CBORObject> Map;
+      // Key whose value is read next, or null if a key is read next
+      public CBORObject Key;
+      public CBORObject LastKey;
+      // Tag number, or index of the shared object slot for tag 28
+      public long Tag;
+    }
+
+    // Sizes of the buffer when reading ahead: it starts small, so that
+    // reading a single small data item is cheap, and grows each time it's
+    // refilled
+    private const int InitialReadAheadSize = 256;
+    private const int ReadAheadBufferSize = 8192;
+    // Large enough to hold the rest of any fixed-length data item
+    private const int MinBufferSize = 32;
 
     public CBORReader(Stream inStream) : this(inStream,
         CBOREncodeOptions.Default) {
     }
 
-    public CBORReader(Stream inStream, CBOREncodeOptions options) {
+    public CBORReader(Stream inStream, CBOREncodeOptions options)
+      : this(inStream, options, false) {
+    }
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORReader'/> class that reads from a
+    /// stream.</summary>
+    /// <param name='inStream'>The stream to read from.</param>
+    /// <param name='options'>Options for decoding.</param>
+    /// <param name='readAhead'>If true, reads the stream in large
+    /// blocks, so that bytes beyond the end of a data item may be
+    /// consumed from the stream; call <see
+    /// cref='PeterO.Cbor.CBORReader.ReturnUnreadBytes'/> to seek back
+    /// over them. If false, reads no more bytes from the stream than
+    /// the data item needs.</param>
+    public CBORReader(
+      Stream inStream,
+      CBOREncodeOptions options,
+      bool readAhead) {
       this.stream = inStream;
       this.options = options;
+      this.readAhead = readAhead;
+      this.maxDepth = options.MaxNestingDepth;
+      this.internTable = options.InternStrings ? new CBORInternTable() :
+        null;
+    }
+
+    public CBORReader(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options) : this(
+        data,
+        offset,
+        count,
+        options,
+        options.InternStrings ? new CBORInternTable() : null) {
+    }
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORReader'/> class that reads from a
+    /// portion of a byte array.</summary>
+    /// <param name='data'>The byte array to read from.</param>
+    /// <param name='offset'>Index of the first byte to read.</param>
+    /// <param name='count'>Number of bytes to read.</param>
+    /// <param name='options'>Options for decoding.</param>
+    /// <param name='internTable'>The table of short text strings to
+    /// share with other readers, or null if text strings aren't
+    /// interned.</param>
+    public CBORReader(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options,
+      CBORInternTable internTable) {
+      this.data = data;
+      this.dataStart = offset;
+      this.dataPos = offset;
+      this.dataEnd = offset + count;
+      this.options = options;
+      this.lazy = options.Lazy && !options.ResolveReferences;
+      this.shareByteStrings = options.ShareByteStrings;
+      this.maxDepth = options.MaxNestingDepth;
+      this.internTable = internTable;
+    }
+
+    /// <summary>Gets the number of bytes of input consumed so far by
+    /// the data items read by this reader.</summary>
+    public long Position {
+      get {
+        return this.basePosition + this.dataPos - this.dataStart;
+      }
+    }
+
+    /// <summary>Seeks the stream back over bytes that were read ahead
+    /// but not consumed, so that the stream is positioned just after
+    /// the last data item read. Does nothing if the stream doesn't
+    /// support seeking.</summary>
+    public void ReturnUnreadBytes() {
+      int avail = this.dataEnd - this.dataPos;
+      if (this.stream != null && avail > 0 && this.stream.CanSeek) {
+        this.stream.Seek(-avail, SeekOrigin.Current);
+        this.dataEnd = this.dataPos;
+      }
+    }
+
+    public int ReadByte() {
+      if (this.dataPos < this.dataEnd) {
+        return ((int)this.data[this.dataPos++]) & 0xff;
+      }
+      return this.Ensure(1) ? ((int)this.data[this.dataPos++]) & 0xff :
+        -1;
+    }
+
+    private int InitialBufferSize() {
+      if (!this.readAhead) {
+        return MinBufferSize;
+      }
+      if (this.stream.CanSeek) {
+        // Don't allocate more than the rest of the stream needs
+        long remaining = this.stream.Length - this.stream.Position;
+        return (int)Math.Max(
+            MinBufferSize,
+            Math.Min(InitialReadAheadSize, remaining));
+      }
+      return InitialReadAheadSize;
+    }
+
+    // Makes at least the given number of unread bytes (no more than
+    // MinBufferSize, or, when reading ahead, half the buffer's length)
+    // available in the buffer, refilling it from the stream if
+    // necessary. Returns false if the input ends first.
+    private bool Ensure(int count) {
+      int avail = this.dataEnd - this.dataPos;
+      if (avail >= count) {
+        return true;
+      }
+      if (this.stream == null) {
+        return false;
+      }
+      if (this.data == null) {
+        this.data = new byte[this.InitialBufferSize()];
+      } else if (this.readAhead && this.data.Length < ReadAheadBufferSize) {
+        var newData = new byte[Math.Min(
+            this.data.Length * 2,
+            ReadAheadBufferSize)];
+        Array.Copy(this.data, this.dataPos, newData, 0, avail);
+        this.data = newData;
+      } else if (avail > 0) {
+        Array.Copy(this.data, this.dataPos, this.data, 0, avail);
+      }
+      this.basePosition += this.dataPos;
+      this.dataPos = 0;
+      this.dataEnd = avail;
+      int limit = this.readAhead ? this.data.Length : count;
+      while (this.dataEnd < count) {
+        int read = this.stream.Read(
+            this.data,
+            this.dataEnd,
+            limit - this.dataEnd);
+        if (read <= 0) {
+          return false;
+        }
+        this.dataEnd += read;
+      }
+      return true;
     }
 
-    private static EInteger ToUnsignedEInteger(long val) {
+    // Reads exactly the given number of bytes into the given array.
+    // Returns false if the input ends first.
+    private bool ReadFully(byte[] dest, int offset, int count) {
+      int n = Math.Min(this.dataEnd - this.dataPos, count);
+      if (n > 0) {
+        Array.Copy(this.data, this.dataPos, dest, offset, n);
+        this.dataPos += n;
+        offset += n;
+        count -= n;
+      }
+      if (count == 0) {
+        return true;
+      }
+      if (this.stream == null) {
+        return false;
+      }
+      if (this.readAhead && this.data != null &&
+        count <= this.data.Length / 2) {
+        // Small remainder: refill the buffer and copy from it
+        if (!this.Ensure(count)) {
+          return false;
+        }
+        Array.Copy(this.data, this.dataPos, dest, offset, count);
+        this.dataPos += count;
+        return true;
+      }
+      // The buffer is now empty; read the rest directly into
+      // the destination
+      this.basePosition += this.dataPos;
+      this.dataPos = 0;
+      this.dataEnd = 0;
+      while (count > 0) {
+        int read = this.stream.Read(dest, offset, count);
+        if (read <= 0) {
+          return false;
+        }
+        offset += read;
+        count -= read;
+        this.basePosition += read;
+      }
+      return true;
+    }
+
+    private bool ExceedsKnownLength(long size) {
+      long avail = this.dataEnd - this.dataPos;
+      if (size <= avail) {
+        return false;
+      }
+      return (this.stream == null) ||
+        PropertyMap.ExceedsKnownLength(this.stream, size - avail);
+    }
+
+    internal static EInteger ToUnsignedEInteger(long val) {
       var lval = (EInteger)(val & ~(1L << 63));
       if ((val >> 63) != 0) {
         EInteger bigintAdd = EInteger.One << 63;
@@ -55,15 +319,14 @@ internal class CBORReader {
             throw new CBORException("No stringref namespace");
           }
           break;
-        case 28:
-        case 29:
-          this.hasSharableObjects = true;
-          break;
       }
     }
 
     private CBORObject ObjectFromByteArray(byte[] data, int lengthHint) {
-      CBORObject cbor = CBORObject.FromRaw(data);
+      return this.AddStringRefIfNeeded(CBORObject.FromRaw(data), lengthHint);
+    }
+
+    private CBORObject AddStringRefIfNeeded(CBORObject cbor, int lengthHint) {
       if (this.stringRefs != null) {
         this.stringRefs.AddStringIfNeeded(cbor, lengthHint);
       }
@@ -79,60 +342,28 @@ internal class CBORReader {
       return cbor;
     }
 
-    private static CBORObject ResolveSharedRefs(
-      CBORObject obj,
-      SharedRefs sharedRefs) {
-      if (obj == null) {
-        return null;
-      }
-      CBORType type = obj.Type;
-      bool hasTag = obj.HasMostOuterTag(29);
-      if (hasTag) {
-        CBORObject untagged = obj.UntagOne();
-        if (untagged.IsTagged ||
-          untagged.Type != CBORType.Integer ||
-untagged.AsNumber().IsNegative()) {
-          throw new CBORException(
-            "Shared ref index must be an untagged integer 0 or greater");
-        }
-        return sharedRefs.GetObject(untagged.AsEIntegerValue());
-      }
-      hasTag = obj.HasMostOuterTag(28);
-      if (hasTag) {
-        obj = obj.UntagOne();
-        sharedRefs.AddObject(obj);
-      }
-      if (type == CBORType.Map) {
-        foreach (CBORObject key in obj.Keys) {
-          CBORObject value = obj[key];
-          CBORObject newvalue = ResolveSharedRefs(value, sharedRefs);
-          if (value != newvalue) {
-            obj[key] = newvalue;
-          }
-        }
-      } else if (type == CBORType.Array) {
-        for (var i = 0; i < obj.Count; ++i) {
-          obj[i] = ResolveSharedRefs(obj[i], sharedRefs);
-        }
+    // Fills the shared object slot with an array or map as soon as it's
+    // created, before its items are read, so that the items can refer to
+    // the array or map itself
+    private void ShareIfNeeded(int shareIndex, CBORObject obj) {
+      if (shareIndex >= 0) {
+        this.sharedRefs.SetObject(shareIndex, obj);
       }
-      return obj;
     }
 
     public CBORObject Read() {
-      CBORObject obj = this.options.AllowEmpty ?
+      // Each data item read starts with fresh reference state
+      this.stringRefs = null;
+      this.sharedRefs = null;
+      this.pendingShareIndex = -1;
+      this.depth = 0;
+      this.frameCount = 0;
+      return this.options.AllowEmpty ?
         this.ReadInternalOrEOF() : this.ReadInternal();
-      if (this.options.ResolveReferences && this.hasSharableObjects) {
-        var sharedRefs = new SharedRefs();
-        return ResolveSharedRefs(obj, sharedRefs);
-      }
-      return obj;
     }
 
     private CBORObject ReadInternalOrEOF() {
-      if (this.depth > 500) {
-        throw new CBORException("Too deeply nested");
-      }
-      int firstbyte = this.stream.ReadByte();
+      int firstbyte = this.ReadByte();
       if (firstbyte < 0) {
         // End of stream
         return null;
@@ -141,17 +372,17 @@ internal class CBORReader {
     }
 
     private CBORObject ReadInternal() {
-      if (this.depth > 500) {
-        throw new CBORException("Too deeply nested");
-      }
-      int firstbyte = this.stream.ReadByte();
+      int firstbyte = this.ReadByte();
       if (firstbyte < 0) {
         throw new CBORException("Premature end of data");
       }
       return this.ReadForFirstByte(firstbyte);
     }
 
-    private CBORObject ReadStringArrayMap(int type, long uadditional) {
+    private CBORObject ReadStringArrayMap(
+      int type,
+      long uadditional,
+      int shareIndex) {
       bool canonical = this.options.Ctap2Canonical;
       if (type == 2 || type == 3) { // Byte string or text string
         if ((uadditional >> 31) != 0) {
@@ -161,7 +392,33 @@ internal class CBORReader {
         }
         int hint = (uadditional > Int32.MaxValue ||
             (uadditional >> 63) != 0) ? Int32.MaxValue : (int)uadditional;
-        byte[] data = ReadByteData(this.stream, uadditional, null);
+        if (type == 2 && this.shareByteStrings && uadditional > 0) {
+          if (this.ExceedsKnownLength(uadditional)) {
+            throw new CBORException("Premature end of data");
+          }
+          var slice = new CBORByteStringSlice(
+            this.data,
+            this.dataPos,
+            (int)uadditional);
+          this.dataPos += (int)uadditional;
+          return this.AddStringRefIfNeeded(
+              CBORObject.FromByteStringSlice(slice),
+              hint);
+        }
+        if (type == 3 && this.internTable != null &&
+          uadditional <= CBORInternTable.MaxLength) {
+          var length = (int)uadditional;
+          if (!this.Ensure(length)) {
+            throw new CBORException("Premature end of data");
+          }
+          CBORObject interned = this.internTable.Intern(
+              this.data,
+              this.dataPos,
+              length);
+          this.dataPos += length;
+          return this.AddStringRefIfNeeded(interned, hint);
+        }
+        byte[] data = this.ReadByteData(uadditional);
         if (type == 3) {
           if (!CBORUtilities.CheckUtf8(data)) {
             throw new CBORException("Invalid UTF-8");
@@ -175,68 +432,330 @@ internal class CBORReader {
         if (this.options.Ctap2Canonical && this.depth >= 4) {
           throw new CBORException("Depth too high in canonical CBOR");
         }
-        CBORObject cbor = CBORObject.NewArray();
         if ((uadditional >> 31) != 0) {
           throw new CBORException("Length of " +
             ToUnsignedEInteger(uadditional).ToString() + " is bigger than" +
 "\u0020supported");
         }
-        if (PropertyMap.ExceedsKnownLength(this.stream, uadditional)) {
+        if (this.ExceedsKnownLength(uadditional)) {
           throw new CBORException("Remaining data too small for array" +
 "\u0020length");
         }
-        ++this.depth;
-        for (long i = 0; i < uadditional; ++i) {
-          cbor.Add(
-            this.ReadInternal());
+        var list = new List<CBORObject>(InitialCapacity(uadditional));
+        CBORObject cbor = CBORObject.FromRaw(list);
+        this.ShareIfNeeded(shareIndex, cbor);
+        if (uadditional == 0) {
+          return cbor;
         }
-        --this.depth;
-        return cbor;
+        Frame frame = this.PushFrame(FrameArray, uadditional);
+        frame.Container = cbor;
+        frame.List = list;
+        return null;
       }
       if (type == 5) { // Map, type 5
         if (this.options.Ctap2Canonical && this.depth >= 4) {
           throw new CBORException("Depth too high in canonical CBOR");
         }
-        CBORObject cbor = CBORObject.NewMap();
+        IDictionary<CBORObject, CBORObject> map = this.NewMap();
+        CBORObject cbor = CBORObject.FromRaw(map);
+        this.ShareIfNeeded(shareIndex, cbor);
         if ((uadditional >> 31) != 0) {
           throw new CBORException("Length of " +
             ToUnsignedEInteger(uadditional).ToString() + " is bigger than" +
             "\u0020supported");
         }
-        if (PropertyMap.ExceedsKnownLength(this.stream, uadditional)) {
+        if (this.ExceedsKnownLength(uadditional)) {
           throw new CBORException("Remaining data too small for map" +
 "\u0020length");
         }
-        CBORObject lastKey = null;
-        IComparer<CBORObject> comparer = CBORCanonical.Comparer;
-        for (long i = 0; i < uadditional; ++i) {
-          ++this.depth;
-          CBORObject key = this.ReadInternal();
-          CBORObject value = this.ReadInternal();
-          --this.depth;
-          if (this.options.Ctap2Canonical && lastKey != null) {
-            int cmp = comparer.Compare(lastKey, key);
+        if (uadditional == 0) {
+          return cbor;
+        }
+        Frame frame = this.PushFrame(FrameMap, uadditional);
+        frame.Container = cbor;
+        frame.Map = map;
+        return null;
+      }
+      throw new CBORException("Unexpected data encountered");
+    }
+
+    // Gets the number of items to reserve room for in an array whose
+    // declared length is given. The room reserved is capped even if the
+    // length fits in the remaining data, since each of many nested arrays
+    // can declare a length that fits.
+    private static int InitialCapacity(long length) {
+      return (int)Math.Min(length, 1024);
+    }
+
+    // Creates an empty map for a map being decoded
+    private IDictionary<CBORObject, CBORObject> NewMap() {
+      return this.options.KeepKeyOrder ? PropertyMap.NewOrderedDict() :
+        new SortedDictionary<CBORObject, CBORObject>();
+    }
+
+    // Adds a key and value to a map being decoded. The key is looked up
+    // only once, with the duplicate key check folded into the insertion.
+    private void AddMapEntry(
+      IDictionary<CBORObject, CBORObject> map,
+      CBORObject key,
+      CBORObject value) {
+      if (this.options.AllowDuplicateKeys) {
+        map[key] = value;
+        return;
+      }
+      try {
+        map.Add(key, value);
+      } catch (ArgumentException ex) {
+        throw new CBORException("Duplicate key already exists", ex);
+      }
+    }
+
+    // Skips over the array or map whose head byte was just read, and
+    // returns an object that decodes it when it's first accessed
+    private CBORObject ReadLazyContainer(int firstbyte) {
+      int start = this.dataPos - 1;
+      int end;
+      if (this.lazyEnds == null || !this.lazyEnds.TryGetValue(
+          start,
+          out end)) {
+        // Not skipped before: check the array or map and note where it
+        // and each array and map in it end, so that none of them has to
+        // be checked again when it's decoded
+        var ends = new Dictionary<int, int>();
+        end = ScanContainers(
+            this.data,
+            start,
+            this.dataEnd - start,
+            this.options,
+            this.depth,
+            ends);
+        this.lazyEnds = ends;
+      }
+      this.dataPos = end;
+      return CBORObject.FromLazyContainer(new CBORLazyContainer(
+            this.data,
+            start,
+            end - start,
+            this.options,
+            this.depth,
+            ((firstbyte >> 5) & 0x07) == 5,
+            this.internTable,
+            this.lazyEnds,
+            false));
+    }
+
+    /// <summary>Checks the array or map that starts at the given offset
+    /// of a byte array, and notes where it and each array and map in it
+    /// end.</summary>
+    /// <param name='data'>The byte array.</param>
+    /// <param name='start'>Offset of the array's or map's head
+    /// byte.</param>
+    /// <param name='count'>Number of bytes available from that
+    /// offset.</param>
+    /// <param name='options'>Options for decoding.</param>
+    /// <param name='depth'>The nesting depth at which the array or map
+    /// appears.</param>
+    /// <param name='ends'>Receives the end offset of each array and map,
+    /// keyed by its start offset.</param>
+    /// <returns>The end offset of the array or map.</returns>
+    public static int ScanContainers(
+      byte[] data,
+      int start,
+      int count,
+      CBOREncodeOptions options,
+      int depth,
+      Dictionary<int, int> ends) {
+      var tokens = new CBORTokenReader(data, start, count, options, depth);
+      var starts = new List<int>();
+      while (true) {
+        var before = (int)tokens.Position;
+        tokens.Read();
+        CBORTokenType type = tokens.TokenType;
+        if (type == CBORTokenType.StartArray ||
+          type == CBORTokenType.StartMap) {
+          starts.Add(start + before);
+        } else if (type == CBORTokenType.EndArray ||
+          type == CBORTokenType.EndMap) {
+          int end = start + (int)tokens.Position;
+          ends[starts[starts.Count - 1]] = end;
+          starts.RemoveAt(starts.Count - 1);
+          if (starts.Count == 0) {
+            return end;
+          }
+        }
+      }
+    }
+
+    /// <summary>Decodes the array or map that a lazily decoded array or
+    /// map was encoded in. Arrays and maps within it are again decoded
+    /// lazily.</summary>
+    /// <param name='depth'>The nesting depth at which the array or map
+    /// appeared.</param>
+    /// <param name='ends'>End offsets of the arrays and maps in the
+    /// data, keyed by their start offsets, or null if not known.</param>
+    /// <returns>The decoded array or map.</returns>
+    public CBORObject ReadLazyContainerItems(
+      int depth,
+      Dictionary<int, int> ends) {
+      this.depth = depth;
+      this.eagerNext = true;
+      this.lazyEnds = ends;
+      return this.ReadInternal();
+    }
+
+    // Reads a data item whose head byte was just read. Arrays and maps
+    // are read without recursion: their items are read in a loop, with a
+    // frame for each array, map, or tag whose items aren't all read yet.
+    public CBORObject ReadForFirstByte(int firstbyte) {
+      int baseCount = this.frameCount;
+      CBORObject obj = this.ReadItemHead(firstbyte);
+      while (true) {
+        if (obj == null) {
+          // The innermost frame needs its next item
+          Frame frame = this.frames[this.frameCount - 1];
+          int headByte = this.ReadByte();
+          if (headByte < 0) {
+            throw new CBORException("Premature end of data");
+          }
+          if (headByte == 0xff && frame.Remaining < 0 && frame.Key == null) {
+            // Break code ends an indefinite-length array or map
+            obj = this.PopFrame();
+          } else {
+            obj = this.ReadItemHead(headByte);
+          }
+        } else if (this.frameCount == baseCount) {
+          return obj;
+        } else {
+          obj = this.AddToFrame(obj);
+        }
+      }
+    }
+
+    private Frame PushFrame(int kind, long remaining) {
+      if (this.frames == null) {
+        this.frames = new Frame[8];
+      } else if (this.frameCount == this.frames.Length) {
+        var newFrames = new Frame[this.frameCount * 2];
+        Array.Copy(this.frames, newFrames, this.frameCount);
+        this.frames = newFrames;
+      }
+      Frame frame = this.frames[this.frameCount];
+      if (frame == null) {
+        frame = new Frame();
+        this.frames[this.frameCount] = frame;
+      }
+      ++this.frameCount;
+      ++this.depth;
+      frame.Kind = kind;
+      frame.Remaining = remaining;
+      return frame;
+    }
+
+    // Removes the innermost frame and returns its array or map, if any
+    private CBORObject PopFrame() {
+      --this.frameCount;
+      --this.depth;
+      Frame frame = this.frames[this.frameCount];
+      CBORObject container = frame.Container;
+      // Don't keep decoded objects alive through a reused frame
+      frame.Container = null;
+      frame.List = null;
+      frame.Map = null;
+      frame.Key = null;
+      frame.LastKey = null;
+      return container;
+    }
+
+    // Adds an item just read to the innermost frame, and returns the
+    // frame's array, map, or tagged item if that item completes it, or
+    // null otherwise
+    private CBORObject AddToFrame(CBORObject obj) {
+      Frame frame = this.frames[this.frameCount - 1];
+      switch (frame.Kind) {
+        case FrameArray:
+          frame.List.Add(obj);
+          break;
+        case FrameMap: {
+          if (frame.Key == null) {
+            frame.Key = obj;
+            return null;
+          }
+          CBORObject key = frame.Key;
+          frame.Key = null;
+          if (this.options.Ctap2Canonical && frame.LastKey != null) {
+            int cmp = CBORCanonical.Comparer.Compare(frame.LastKey, key);
             if (cmp > 0) {
               throw new CBORException("Map key not in canonical order");
             } else if (cmp == 0) {
               throw new CBORException("Duplicate map key");
             }
           }
-          if (!this.options.AllowDuplicateKeys) {
-            if (cbor.ContainsKey(key)) {
-              throw new CBORException("Duplicate key already exists");
-            }
-          }
-          lastKey = key;
-          cbor[key] = value;
+          frame.LastKey = key;
+          this.AddMapEntry(frame.Map, key, obj);
+          break;
         }
-        return cbor;
+        default:
+          this.PopFrame();
+          return this.CompleteTag(frame, obj);
+      }
+      if (frame.Remaining > 0 && --frame.Remaining == 0) {
+        return this.PopFrame();
       }
       return null;
     }
 
-    public CBORObject ReadForFirstByte(int firstbyte) {
-      if (this.depth > 500) {
+    // Finishes reading a tag, given the item it applies to
+    private CBORObject CompleteTag(Frame frame, CBORObject o) {
+      long uadditional = frame.Tag;
+      if (frame.Kind == FrameShareable) {
+        this.sharedRefs.SetObject((int)uadditional, o);
+        return o;
+      }
+      if (frame.Kind == FrameSharedRef) {
+        if (o.IsTagged || o.Type != CBORType.Integer ||
+          o.AsNumber().IsNegative()) {
+          throw new CBORException(
+            "Shared ref index must be an untagged integer 0 or greater");
+        }
+        this.sharedRefs = this.sharedRefs ?? new SharedRefs();
+        return this.sharedRefs.GetObject(o.AsEIntegerValue());
+      }
+      if ((uadditional >> 63) != 0) {
+        return CBORObject.FromObjectAndTag(o,
+            ToUnsignedEInteger(uadditional));
+      }
+      if (uadditional < 65536) {
+        if (this.options.ResolveReferences) {
+          int uaddl = uadditional >= 257 ? 257 : (uadditional < 0 ? 0 :
+              (int)uadditional);
+          switch (uaddl) {
+            case 256:
+              // string tag
+              this.stringRefs.Pop();
+              break;
+            case 25:
+              // stringref tag
+              if (o.IsTagged || o.Type != CBORType.Integer) {
+                throw new CBORException("stringref must be an unsigned" +
+                  "\u0020integer");
+              }
+              return this.stringRefs.GetString(o.AsEIntegerValue());
+          }
+        }
+        return CBORObject.FromObjectAndTag(
+            o,
+            (int)uadditional);
+      }
+      return CBORObject.FromObjectAndTag(
+          o,
+          (EInteger)uadditional);
+    }
+
+    // Reads a data item whose head byte was just read, or, if it's an
+    // array, map, or tag whose items are yet to be read, pushes a frame
+    // for it and returns null
+    private CBORObject ReadItemHead(int firstbyte) {
+      if (this.depth > this.maxDepth) {
         throw new CBORException("Too deeply nested");
       }
       if (firstbyte < 0) {
@@ -249,25 +768,25 @@ internal class CBORReader {
       int additional = firstbyte & 0x1f;
       long uadditional;
       CBORObject fixedObject;
-      if (this.options.Ctap2Canonical) {
-        if (additional >= 0x1c) {
-          // NOTE: Includes stop byte and indefinite length data items
-          throw new CBORException("Invalid canonical CBOR encountered");
+      // Index of the shared object slot this item fills, if it's the
+      // item of a shareable tag (only arrays and maps use it here)
+      int shareIndex = this.pendingShareIndex;
+      this.pendingShareIndex = -1;
+      if (this.lazy && (type == 4 || type == 5) && additional != 0) {
+        if (this.eagerNext) {
+          this.eagerNext = false;
+        } else {
+          return this.ReadLazyContainer(firstbyte);
         }
+      }
+      if (this.options.Ctap2Canonical) {
         // Check if this represents a fixed object (NOTE: All fixed objects
         // comply with CTAP2 canonical CBOR).
         fixedObject = CBORObject.GetFixedObject(firstbyte);
         if (fixedObject != null) {
           return fixedObject;
         }
-        if (type == 6) {
-          throw new CBORException("Tags not allowed in canonical CBOR");
-        }
-        uadditional = ReadDataLength(
-          this.stream,
-          firstbyte,
-          type,
-          type == 7);
+        uadditional = this.ReadHeadArgument(firstbyte);
         if (type == 0) {
           return (uadditional >> 63) != 0 ?
             CBORObject.FromObject(ToUnsignedEInteger(uadditional)) :
@@ -279,8 +798,6 @@ internal class CBORReader {
           } else if (type == 7) {
           if (additional < 24) {
             return CBORObject.FromSimpleValue(additional);
-          } else if (additional == 24 && uadditional < 32) {
-            throw new CBORException("Invalid simple value encoding");
           } else if (additional == 24) {
             return CBORObject.FromSimpleValue((int)uadditional);
           } else if (additional == 25) {
@@ -291,7 +808,7 @@ internal class CBORReader {
             return CBORObject.FromFloatingPointBits(uadditional, 8);
           }
         } else if (type >= 2 && type <= 5) {
-          return this.ReadStringArrayMap(type, uadditional);
+          return this.ReadStringArrayMap(type, uadditional, shareIndex);
         }
         throw new CBORException("Unexpected data encountered");
       }
@@ -307,18 +824,23 @@ internal class CBORReader {
         return fixedObject;
       }
       // Read fixed-length data
-      byte[] data = null;
       if (expectedLength != 0) {
-        data = new byte[expectedLength];
-        // include the first byte because GetFixedLengthObject
-        // will assume it exists for some head bytes
-        data[0] = unchecked((byte)firstbyte);
-        if (expectedLength > 1 &&
-          this.stream.Read(data, 1, expectedLength - 1) != expectedLength
-          - 1) {
+        // The head byte was just read; parse the rest of the data
+        // item in place in the buffer. GetFixedLengthObject doesn't
+        // read the head byte from the array, so the head byte need
+        // not still be there.
+        if (!this.Ensure(expectedLength - 1)) {
           throw new CBORException("Premature end of data");
         }
-        CBORObject cbor = CBORObject.GetFixedLengthObject(firstbyte, data);
+        CBORObject cbor = (type == 3 && this.internTable != null) ?
+          this.internTable.Intern(
+            this.data,
+            this.dataPos,
+            expectedLength - 1) : CBORObject.GetFixedLengthObject(
+            firstbyte,
+            this.data,
+            this.dataPos - 1);
+        this.dataPos += expectedLength - 1;
         if (this.stringRefs != null && (type == 2 || type == 3)) {
           this.stringRefs.AddStringIfNeeded(cbor, expectedLength - 1);
         }
@@ -331,176 +853,122 @@ internal class CBORReader {
         switch (type) {
           case 2: {
             // Streaming byte string
-            using (var ms = new MemoryStream()) {
-              // Requires same type as this one
-              while (true) {
-                int nextByte = this.stream.ReadByte();
-                if (nextByte == 0xff) {
-                  // break if the "break" code was read
-                  break;
-                }
-                long len = ReadDataLength(this.stream, nextByte, 2);
-                if ((len >> 63) != 0 || len > Int32.MaxValue) {
-                  throw new CBORException("Length" + ToUnsignedEInteger(len)
-+
-                    " is bigger than supported ");
-                }
-                if (nextByte != 0x40) {
-                  // NOTE: 0x40 means the empty byte string
-                  ReadByteData(this.stream, len, ms);
-                }
-              }
-              if (ms.Position > Int32.MaxValue) {
-                throw new
-                CBORException("Length of bytes to be streamed is bigger" +
-"\u0020than supported ");
-              }
-              data = ms.ToArray();
-              return CBORObject.FromRaw(data);
-            }
+            return CBORObject.FromRaw(this.ReadStringChunks(2));
           }
           case 3: {
-            // Streaming text string
-            var builder = new StringBuilder();
-            while (true) {
-              int nextByte = this.stream.ReadByte();
-              if (nextByte == 0xff) {
-                // break if the "break" code was read
-                break;
-              }
-              long len = ReadDataLength(this.stream, nextByte, 3);
-              if ((len >> 63) != 0 || len > Int32.MaxValue) {
-                throw new CBORException("Length" + ToUnsignedEInteger(len) +
-                  " is bigger than supported");
-              }
-              if (nextByte != 0x60) {
-                // NOTE: 0x60 means the empty string
-                if (PropertyMap.ExceedsKnownLength(this.stream, len)) {
-                  throw new CBORException("Premature end of data");
-                }
-                switch (
-                  DataUtilities.ReadUtf8(
-                    this.stream,
-                    (int)len,
-                    builder,
-                    false)) {
-                  case -1:
-                    throw new CBORException("Invalid UTF-8");
-                  case -2:
-                    throw new CBORException("Premature end of data");
-                }
-              }
-            }
-            return CBORObject.FromRaw(builder.ToString());
+            // Streaming text string; kept in UTF-8, as definite-length
+            // text strings are
+            byte[] utf8 = this.ReadStringChunks(3);
+            return (utf8.Length == 0) ? CBORObject.FromObject(String.Empty) :
+              CBORObject.FromRawUtf8(utf8);
           }
           case 4: {
-            CBORObject cbor = CBORObject.NewArray();
-            var vtindex = 0;
+            var list = new List<CBORObject>();
+            CBORObject cbor = CBORObject.FromRaw(list);
+            this.ShareIfNeeded(shareIndex, cbor);
             // Indefinite-length array
-            while (true) {
-              int headByte = this.stream.ReadByte();
-              if (headByte < 0) {
-                throw new CBORException("Premature end of data");
-              }
-              if (headByte == 0xff) {
-                // Break code was read
-                break;
-              }
-              ++this.depth;
-              CBORObject o = this.ReadForFirstByte(
-                  headByte);
-              --this.depth;
-              cbor.Add(o);
-              ++vtindex;
-            }
-            return cbor;
+            Frame frame = this.PushFrame(FrameArray, -1);
+            frame.Container = cbor;
+            frame.List = list;
+            return null;
           }
           case 5: {
-            CBORObject cbor = CBORObject.NewMap();
+            IDictionary<CBORObject, CBORObject> map = this.NewMap();
+            CBORObject cbor = CBORObject.FromRaw(map);
+            this.ShareIfNeeded(shareIndex, cbor);
             // Indefinite-length map
-            while (true) {
-              int headByte = this.stream.ReadByte();
-              if (headByte < 0) {
-                throw new CBORException("Premature end of data");
-              }
-              if (headByte == 0xff) {
-                // Break code was read
-                break;
-              }
-              ++this.depth;
-              CBORObject key = this.ReadForFirstByte(headByte);
-              CBORObject value = this.ReadInternal();
-              --this.depth;
-              if (!this.options.AllowDuplicateKeys) {
-                if (cbor.ContainsKey(key)) {
-                  throw new CBORException("Duplicate key already exists");
-                }
-              }
-              cbor[key] = value;
-            }
-            return cbor;
+            Frame frame = this.PushFrame(FrameMap, -1);
+            frame.Container = cbor;
+            frame.Map = map;
+            return null;
           }
           default: throw new CBORException("Unexpected data encountered");
         }
       }
       EInteger bigintAdditional = EInteger.Zero;
-      uadditional = ReadDataLength(this.stream, firstbyte, type);
+      uadditional = this.ReadDataLength(firstbyte, type);
       // The following doesn't check for major types 0 and 1,
       // since all of them are fixed-length types and are
       // handled in the call to GetFixedLengthObject.
       if (type >= 2 && type <= 5) {
-        return this.ReadStringArrayMap(type, uadditional);
+        return this.ReadStringArrayMap(type, uadditional, shareIndex);
       }
       if (type == 6) { // Tagged item
-        var haveFirstByte = false;
-        var newFirstByte = -1;
+        int kind = FrameTag;
         if (this.options.ResolveReferences && (uadditional >> 32) == 0) {
-          // NOTE: HandleItemTag treats only certain tags up to 256 specially
-          this.HandleItemTag(uadditional);
-        }
-        ++this.depth;
-        CBORObject o = haveFirstByte ? this.ReadForFirstByte(
-            newFirstByte) : this.ReadInternal();
-        --this.depth;
-        if ((uadditional >> 63) != 0) {
-          return CBORObject.FromObjectAndTag(o,
-              ToUnsignedEInteger(uadditional));
-        }
-        if (uadditional < 65536) {
-          if (this.options.ResolveReferences) {
-            int uaddl = uadditional >= 257 ? 257 : (uadditional < 0 ? 0 :
-                (int)uadditional);
-            switch (uaddl) {
-              case 256:
-                // string tag
-                this.stringRefs.Pop();
-                break;
-              case 25:
-                // stringref tag
-                if (o.IsTagged || o.Type != CBORType.Integer) {
-                  throw new CBORException("stringref must be an unsigned" +
-                    "\u0020integer");
-                }
-                return this.stringRefs.GetString(o.AsEIntegerValue());
-            }
+          if (uadditional == 28) {
+            // Reserve the shareable object's slot first, so that
+            // shareable items within it get later indices, as their
+            // tags come later in the data
+            this.sharedRefs = this.sharedRefs ?? new SharedRefs();
+            kind = FrameShareable;
+            uadditional = this.sharedRefs.Reserve();
+          } else if (uadditional == 29) {
+            kind = FrameSharedRef;
+          } else {
+            // NOTE: HandleItemTag treats only certain tags up to 256
+            // specially
+            this.HandleItemTag(uadditional);
           }
-          return CBORObject.FromObjectAndTag(
-              o,
-              (int)uadditional);
         }
-        return CBORObject.FromObjectAndTag(
-            o,
-            (EInteger)uadditional);
+        Frame frame = this.PushFrame(kind, 0);
+        frame.Tag = uadditional;
+        if (kind == FrameShareable) {
+          this.pendingShareIndex = (int)uadditional;
+        }
+        return null;
       }
       throw new CBORException("Unexpected data encountered");
     }
 
     private static readonly byte[] EmptyByteArray = new byte[0];
 
-    private static byte[] ReadByteData(
-      Stream stream,
-      long uadditional,
-      Stream outputStream) {
+    // Reads the chunks of an indefinite-length byte string (type 2) or
+    // text string (type 3) whose head byte was just read, and joins them
+    // into a single byte array. Each chunk of a text string must be
+    // valid UTF-8 on its own.
+    private byte[] ReadStringChunks(int type) {
+      var chunks = new List<byte[]>();
+      long totalLength = 0;
+      while (true) {
+        int nextByte = this.ReadByte();
+        if (nextByte == 0xff) {
+          // break if the "break" code was read
+          break;
+        }
+        // NOTE: Requires the same major type as the string
+        long len = this.ReadDataLength(nextByte, type);
+        if ((len >> 63) != 0 || len > Int32.MaxValue) {
+          throw new CBORException("Length" + ToUnsignedEInteger(len) +
+            " is bigger than supported ");
+        }
+        if (len > 0) {
+          totalLength += len;
+          if (totalLength > Int32.MaxValue) {
+            throw new CBORException("Length of bytes to be streamed is" +
+              "\u0020bigger than supported ");
+          }
+          byte[] chunk = this.ReadByteData(len);
+          if (type == 3 && !CBORUtilities.CheckUtf8(chunk)) {
+            throw new CBORException("Invalid UTF-8");
+          }
+          chunks.Add(chunk);
+        }
+      }
+      if (chunks.Count == 1) {
+        return chunks[0];
+      }
+      // Copy the chunks once into an array of the total length
+      var bytes = new byte[(int)totalLength];
+      var bytesOffset = 0;
+      foreach (byte[] chunk in chunks) {
+        Array.Copy(chunk, 0, bytes, bytesOffset, chunk.Length);
+        bytesOffset += chunk.Length;
+      }
+      return bytes;
+    }
+
+    private byte[] ReadByteData(long uadditional) {
       if (uadditional == 0) {
         return EmptyByteArray;
       }
@@ -508,57 +976,128 @@ internal class CBORReader {
         throw new CBORException("Length" + ToUnsignedEInteger(uadditional) +
           " is bigger than supported ");
       }
-      if (PropertyMap.ExceedsKnownLength(stream, uadditional)) {
+      if (this.ExceedsKnownLength(uadditional)) {
         throw new CBORException("Premature end of stream");
       }
-      if (uadditional <= 0x10000) {
-        // Simple case: small size
-        var data = new byte[(int)uadditional];
-        if (stream.Read(data, 0, data.Length) != data.Length) {
+      var total = (int)uadditional;
+      if (this.stream == null) {
+        // Byte array input: copy directly out of the array
+        var ret = new byte[total];
+        Array.Copy(this.data, this.dataPos, ret, 0, total);
+        this.dataPos += total;
+        return ret;
+      }
+      if (total <= 0x10000 || this.stream is MemoryStream) {
+        // Small size, or the stream is known to hold all the data
+        var ret = new byte[total];
+        if (!this.ReadFully(ret, 0, total)) {
           throw new CBORException("Premature end of stream");
         }
-        if (outputStream != null) {
-          outputStream.Write(data, 0, data.Length);
-          return null;
+        return ret;
+      }
+      // The stream may end well before the stated length, so rather than
+      // allocating all of it up front, read into an array that grows
+      // geometrically and whose final size is exactly the length
+      var data = new byte[0x10000];
+      var filled = 0;
+      while (true) {
+        if (!this.ReadFully(data, filled, data.Length - filled)) {
+          throw new CBORException("Premature end of stream");
         }
-        return data;
-      } else {
-        var tmpdata = new byte[0x10000];
-        var total = (int)uadditional;
-        if (outputStream != null) {
-          while (total > 0) {
-            int bufsize = Math.Min(tmpdata.Length, total);
-            if (stream.Read(tmpdata, 0, bufsize) != bufsize) {
-              throw new CBORException("Premature end of stream");
-            }
-            outputStream.Write(tmpdata, 0, bufsize);
-            total -= bufsize;
-          }
-          return null;
+        filled = data.Length;
+        if (filled == total) {
+          return data;
         }
-        using (var ms = new MemoryStream(0x10000)) {
-          while (total > 0) {
-            int bufsize = Math.Min(tmpdata.Length, total);
-            if (stream.Read(tmpdata, 0, bufsize) != bufsize) {
-              throw new CBORException("Premature end of stream");
-            }
-            ms.Write(tmpdata, 0, bufsize);
-            total -= bufsize;
-          }
-          return ms.ToArray();
+        var newData = new byte[(int)Math.Min((long)filled * 2, total)];
+        Array.Copy(data, 0, newData, 0, filled);
+        data = newData;
+      }
+    }
+
+    // Reads an unsigned big-endian integer with the given number
+    // of bytes (1 through 8)
+    private long ReadBigEndian(int byteCount) {
+      if (!this.Ensure(byteCount)) {
+        throw new CBORException("Premature end of data");
+      }
+      long ret = 0;
+      for (var i = 0; i < byteCount; ++i) {
+        ret = (ret << 8) | (this.data[this.dataPos + i] & 0xffL);
+      }
+      this.dataPos += byteCount;
+      return ret;
+    }
+
+    /// <summary>Reads the argument of a data item head whose first byte
+    /// was just read, applying the same checks that ReadForFirstByte
+    /// applies to heads.</summary>
+    /// <param name='firstbyte'>The first byte of the head.</param>
+    /// <returns>The argument, as an unsigned 64-bit integer stored in a
+    /// signed one. Returns 0 if the head is that of an
+    /// indefinite-length item (additional information 31), which the
+    /// caller is expected to check for.</returns>
+    public long ReadHeadArgument(int firstbyte) {
+      if (firstbyte < 0) {
+        throw new CBORException("Premature end of data");
+      }
+      if (firstbyte == 0xff) {
+        throw new CBORException("Unexpected break code encountered");
+      }
+      int type = (firstbyte >> 5) & 0x07;
+      int additional = firstbyte & 0x1f;
+      long uadditional;
+      if (this.options.Ctap2Canonical) {
+        if (additional >= 0x1c) {
+          // NOTE: Includes stop byte and indefinite length data items
+          throw new CBORException("Invalid canonical CBOR encountered");
         }
+        if (type == 6) {
+          throw new CBORException("Tags not allowed in canonical CBOR");
+        }
+        uadditional = this.ReadDataLength(
+          firstbyte,
+          type,
+          type == 7);
+        if (type == 7 && additional == 24 && uadditional < 32) {
+          throw new CBORException("Invalid simple value encoding");
+        }
+        return uadditional;
       }
+      if (CBORObject.GetExpectedLength(firstbyte) == -1) {
+        // if the head byte is invalid
+        throw new CBORException("Unexpected data encountered");
+      }
+      if (additional == 31) {
+        return 0;
+      }
+      uadditional = this.ReadDataLength(firstbyte, type);
+      if (type == 7 && additional == 24 && uadditional < 32) {
+        throw new CBORException("Invalid overlong simple value");
+      }
+      return uadditional;
+    }
+
+    /// <summary>Skips over the given number of bytes of byte array
+    /// input.</summary>
+    /// <param name='length'>The number of bytes to skip.</param>
+    /// <returns>The index into the byte array of the first byte
+    /// skipped.</returns>
+    public int SkipArrayBytes(long length) {
+      if (length < 0 || this.dataEnd - this.dataPos < length) {
+        throw new CBORException("Premature end of data");
+      }
+      int ret = this.dataPos;
+      this.dataPos += (int)length;
+      return ret;
     }
 
-    private static long ReadDataLength(
-      Stream stream,
+    private long ReadDataLength(
       int headByte,
       int expectedType) {
-      return ReadDataLength(stream, headByte, expectedType, true);
+      return this.ReadDataLength(headByte, expectedType, true);
     }
 
-    private static long ReadDataLength(
-      Stream stream,
+    private long ReadDataLength(
       int headByte,
       int expectedType,
       bool allowNonShortest) {
@@ -572,10 +1111,9 @@ internal class CBORReader {
       if (headByte < 24) {
         return headByte;
       }
-      var data = new byte[8];
       switch (headByte) {
         case 24: {
-          int tmp = stream.ReadByte();
+          int tmp = this.ReadByte();
           if (tmp < 0) {
             throw new CBORException("Premature end of data");
           }
@@ -585,42 +1123,22 @@ internal class CBORReader {
           return tmp;
         }
         case 25: {
-          if (stream.Read(data, 0, 2) != 2) {
-            throw new CBORException("Premature end of data");
-          }
-          int lowAdditional = ((int)(data[0] & (int)0xff)) << 8;
-          lowAdditional |= (int)(data[1] & (int)0xff);
+          var lowAdditional = (int)this.ReadBigEndian(2);
           if (!allowNonShortest && lowAdditional < 256) {
             throw new CBORException("Non-shortest CBOR form");
           }
           return lowAdditional;
         }
         case 26: {
-          if (stream.Read(data, 0, 4) != 4) {
-            throw new CBORException("Premature end of data");
-          }
-          long uadditional = ((long)(data[0] & 0xffL)) << 24;
-          uadditional |= ((long)(data[1] & 0xffL)) << 16;
-          uadditional |= ((long)(data[2] & 0xffL)) << 8;
-          uadditional |= (long)(data[3] & 0xffL);
+          long uadditional = this.ReadBigEndian(4);
           if (!allowNonShortest && (uadditional >> 16) == 0) {
             throw new CBORException("Non-shortest CBOR form");
           }
           return uadditional;
         }
         case 27: {
-          if (stream.Read(data, 0, 8) != 8) {
-            throw new CBORException("Premature end of data");
-          }
           // Treat return value as an unsigned integer
-          long uadditional = ((long)(data[0] & 0xffL)) << 56;
-          uadditional |= ((long)(data[1] & 0xffL)) << 48;
-          uadditional |= ((long)(data[2] & 0xffL)) << 40;
-          uadditional |= ((long)(data[3] & 0xffL)) << 32;
-          uadditional |= ((long)(data[4] & 0xffL)) << 24;
-          uadditional |= ((long)(data[5] & 0xffL)) << 16;
-          uadditional |= ((long)(data[6] & 0xffL)) << 8;
-          uadditional |= (long)(data[7] & 0xffL);
+          long uadditional = this.ReadBigEndian(8);
           if (!allowNonShortest && (uadditional >> 32) == 0) {
             throw new CBORException("Non-shortest CBOR form");
           }
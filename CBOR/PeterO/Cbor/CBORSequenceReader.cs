@@ -0,0 +1,148 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using System.Collections;
+using System.Collections.Generic;
+using System.IO;
+
+namespace PeterO.Cbor {
+  /// <summary>
+  /// <para>Reads a sequence of CBOR objects (as in RFC 8742) from a data
+  /// stream one at a time, so that a sequence far larger than the
+  /// available memory, such as one stored in a large file, can be
+  /// scanned. Each CBOR object is decoded only when it's read, and no
+  /// reference to it is kept afterwards.</para>
+  /// <para>This class also reports the byte offset of each CBOR object it
+  /// reads, so that a scan can be resumed later: seek the stream to the
+  /// offset of the next CBOR object, then create a new reader with that
+  /// offset as its starting offset.</para>
+  /// <para>The data stream is read ahead in large blocks, so after
+  /// reading from a stream with this class, the stream's position is
+  /// not necessarily just after the last CBOR object read. This class
+  /// doesn't close the data stream.</para>
+  /// <para>This class is not thread safe.</para></summary>
+  public sealed class CBORSequenceReader : IEnumerable<CBORObject> {
+    private readonly CBORReader reader;
+    private readonly long startOffset;
+    private long offset;
+    private bool atEnd;
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORSequenceReader'/> class that reads
+    /// from the current position of a data stream with the default
+    /// options.</summary>
+    /// <param name='stream'>A readable data stream.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> is null.</exception>
+    public CBORSequenceReader(Stream stream)
+      : this(stream, CBOREncodeOptions.Default, 0) {
+    }
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORSequenceReader'/> class.</summary>
+    /// <param name='stream'>A readable data stream, positioned at the
+    /// start of a CBOR object.</param>
+    /// <param name='options'>Specifies the options to use when decoding
+    /// CBOR objects. See CBOREncodeOptions for more information. The
+    /// AllowEmpty property is treated as always set.</param>
+    /// <param name='startOffset'>The byte offset of the stream's current
+    /// position within the sequence, which is the offset reported for the
+    /// first CBOR object read. Offsets of later CBOR objects are counted
+    /// from it.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> or <paramref name='options'/> is
+    /// null.</exception>
+    /// <exception cref='ArgumentException'>The parameter <paramref
+    /// name='startOffset'/> is less than 0.</exception>
+    public CBORSequenceReader(
+      Stream stream,
+      CBOREncodeOptions options,
+      long startOffset) {
+      if (stream == null) {
+        throw new ArgumentNullException(nameof(stream));
+      }
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      if (startOffset < 0) {
+        throw new ArgumentException("startOffset (" + startOffset +
+          ") is less than 0");
+      }
+      if (!options.AllowEmpty) {
+        options = new CBOREncodeOptions(options.ToString() +
+          ";allowempty=1");
+      }
+      this.reader = new CBORReader(stream, options, true);
+      this.startOffset = startOffset;
+      this.offset = startOffset;
+    }
+
+    /// <summary>Gets the byte offset, within the sequence, of the CBOR
+    /// object last read, or of the next CBOR object if none was read
+    /// yet.</summary>
+    /// <value>The byte offset of the CBOR object last read.</value>
+    public long Offset {
+      get {
+        return this.offset;
+      }
+    }
+
+    /// <summary>Gets the byte offset, within the sequence, just after the
+    /// CBOR object last read; this is where the next CBOR object, if any,
+    /// begins.</summary>
+    /// <value>The byte offset of the next CBOR object.</value>
+    public long NextOffset {
+      get {
+        return this.startOffset + this.reader.Position;
+      }
+    }
+
+    /// <summary>Reads and decodes the next CBOR object in the
+    /// sequence.</summary>
+    /// <returns>The CBOR object read, or null if the end of the stream was
+    /// reached.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>There was an error in
+    /// reading or parsing the data, including if the last CBOR object was
+    /// read only partially.</exception>
+    public CBORObject Read() {
+      if (this.atEnd) {
+        return null;
+      }
+      this.offset = this.NextOffset;
+      CBORObject obj;
+      try {
+        obj = this.reader.Read();
+      } catch (IOException ex) {
+        throw new CBORException("I/O error occurred.", ex);
+      }
+      this.atEnd = obj == null;
+      return obj;
+    }
+
+    /// <summary>Gets an enumerator that reads and decodes the remaining
+    /// CBOR objects in the sequence, one at a time, as the enumerator
+    /// moves to them. While enumerating, the <c>Offset</c> property gives
+    /// the byte offset of the current CBOR object.</summary>
+    /// <returns>An enumerator of the remaining CBOR objects.</returns>
+    public IEnumerator<CBORObject> GetEnumerator() {
+      while (true) {
+        CBORObject obj = this.Read();
+        if (obj == null) {
+          yield break;
+        }
+        yield return obj;
+      }
+    }
+
+    IEnumerator IEnumerable.GetEnumerator() {
+      return this.GetEnumerator();
+    }
+  }
+}
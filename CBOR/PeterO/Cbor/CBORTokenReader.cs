@@ -0,0 +1,573 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using PeterO.Numbers;
+
+namespace PeterO.Cbor {
+  /// <summary>
+  /// <para>A forward-only reader of the tokens of CBOR data in a byte
+  /// array, which doesn't build CBORObject trees. Each call to Read
+  /// moves the reader to the next token: an integer, floating-point
+  /// number, simple value, string, tag, or the start or end of an
+  /// array or map.</para>
+  /// <para>The reader checks the data items' heads and the UTF-8 of
+  /// text strings the same way CBORObject.DecodeFromBytes does, but it
+  /// doesn't check for duplicate map keys or the order of map keys, and
+  /// it doesn't interpret tags.</para></summary>
+  public sealed class CBORTokenReader {
+    private readonly byte[] data;
+    private readonly CBORReader reader;
+    private readonly int maxDepth;
+    // For each container open at the current position: its major type,
+    // and the number of data items left in it (for definite-length
+    // containers) or -1 minus the number of data items read from it (for
+    // indefinite-length ones), and the number of tags it's tagged with
+    private int[] stackTypes;
+    private long[] stackRemaining;
+    private int[] stackTags;
+    private int stackSize;
+    // Number of tags the current position is nested in, counting those
+    // of the open containers, as CBORReader counts them toward the
+    // nesting depth
+    private int tagDepth;
+    // Number of tags read since the last data item that isn't a tag
+    private int pendingTags;
+    private bool afterTag;
+    private CBORTokenType tokenType;
+    private int majorType;
+    private int headByte;
+    private long argument;
+    private int depth;
+    private int stringOffset;
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORTokenReader'/> class that reads CBOR
+    /// data from a byte array.</summary>
+    /// <param name='data'>A byte array in which CBOR data items are
+    /// encoded, one after another.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    public CBORTokenReader(byte[] data) : this(
+        data,
+        0,
+        data == null ? 0 : data.Length,
+        CBOREncodeOptions.Default) {
+    }
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORTokenReader'/> class that reads CBOR
+    /// data from a portion of a byte array.</summary>
+    /// <param name='data'>A byte array in which CBOR data items are
+    /// encoded, one after another.</param>
+    /// <param name='offset'>An index starting at 0 showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion
+    /// of <paramref name='data'/> (but not more than <paramref
+    /// name='data'/> 's length).</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public CBORTokenReader(byte[] data, int offset, int count) : this(
+        data,
+        offset,
+        count,
+        CBOREncodeOptions.Default) {
+    }
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORTokenReader'/> class that reads CBOR
+    /// data from a portion of a byte array, using the specified
+    /// options.</summary>
+    /// <param name='data'>A byte array in which CBOR data items are
+    /// encoded, one after another.</param>
+    /// <param name='offset'>An index starting at 0 showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion
+    /// of <paramref name='data'/> (but not more than <paramref
+    /// name='data'/> 's length).</param>
+    /// <param name='options'>Specifies options to control how the CBOR
+    /// data is checked. Only the Ctap2Canonical and MaxNestingDepth
+    /// properties are used by this class; as when decoding CBOR objects,
+    /// tags count toward the nesting depth.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> or <paramref name='options'/> is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public CBORTokenReader(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options) : this(data, offset, count, options, 0) {
+    }
+
+    // Reads CBOR data that is nested in the given number of arrays, maps,
+    // and tags, which count toward the options' nesting limit
+    internal CBORTokenReader(
+      byte[] data,
+      int offset,
+      int count,
+      CBOREncodeOptions options,
+      int outerDepth) {
+      CBORObject.CheckByteArrayPortion(data, offset, count);
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      this.data = data;
+      // NOTE: Text strings are skipped here, never decoded, so no
+      // intern table is needed
+      this.reader = new CBORReader(data, offset, count, options, null);
+      this.maxDepth = options.MaxNestingDepth - outerDepth;
+      this.stackTypes = new int[8];
+      this.stackRemaining = new long[8];
+      this.stackTags = new int[8];
+      this.tokenType = CBORTokenType.None;
+      this.majorType = -1;
+    }
+
+    /// <summary>Gets the kind of token the reader is positioned
+    /// on.</summary>
+    /// <value>The kind of token the reader is positioned on, or
+    /// CBORTokenType.None if Read wasn't called yet or returned
+    /// false.</value>
+    public CBORTokenType TokenType {
+      get {
+        return this.tokenType;
+      }
+    }
+
+    /// <summary>Gets the major type (0 through 7) of the data item head
+    /// the current token was read from.</summary>
+    /// <value>The major type of the current token, or -1 if the current
+    /// token is None or the end of an array, map, or indefinite-length
+    /// string.</value>
+    public int MajorType {
+      get {
+        return this.majorType;
+      }
+    }
+
+    /// <summary>Gets the nesting depth of the current token. Data items
+    /// not within an array, map, or indefinite-length string have depth
+    /// 0, items directly within one of these have depth 1, and so on.
+    /// The end of an array, map, or indefinite-length string has the
+    /// same depth as its start. A tag has the same depth as the data item
+    /// it applies to.</summary>
+    /// <value>The nesting depth of the current token.</value>
+    public int Depth {
+      get {
+        return this.depth;
+      }
+    }
+
+    /// <summary>Gets a value indicating whether the current token is the
+    /// start of an indefinite-length array, map, byte string, or text
+    /// string.</summary>
+    /// <value><c>true</c> if the current token is the start of an
+    /// indefinite-length data item; otherwise, <c>false</c>.</value>
+    public bool IsIndefiniteLength {
+      get {
+        return this.majorType >= 2 && this.majorType <= 5 &&
+          (this.headByte & 0x1f) == 31;
+      }
+    }
+
+    /// <summary>Gets the number of bytes of the byte array portion read
+    /// so far.</summary>
+    /// <value>The number of bytes read so far.</value>
+    public long Position {
+      get {
+        return this.reader.Position;
+      }
+    }
+
+    /// <summary>Gets the number of items in the array, number of
+    /// key-value pairs in the map, or number of bytes in the string,
+    /// that starts with the current token.</summary>
+    /// <value>The number of items, key-value pairs, or bytes, or -1 if
+    /// the current token is the start of an indefinite-length data
+    /// item.</value>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a byte string, text string, or the start of an array or
+    /// map.</exception>
+    public long Count {
+      get {
+        if (this.tokenType != CBORTokenType.ByteString &&
+          this.tokenType != CBORTokenType.TextString &&
+          this.tokenType != CBORTokenType.StartArray &&
+          this.tokenType != CBORTokenType.StartMap) {
+          throw new InvalidOperationException("Not a string, array, or" +
+            " map");
+        }
+        return this.IsIndefiniteLength ? -1 : this.argument;
+      }
+    }
+
+    /// <summary>Gets the index into the byte array of the first byte of
+    /// the current byte string or text string, without copying that
+    /// string.</summary>
+    /// <value>The index of the first byte of the string.</value>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a definite-length byte string or text string.</exception>
+    public int StringOffset {
+      get {
+        this.CheckDefiniteString();
+        return this.stringOffset;
+      }
+    }
+
+    /// <summary>Gets the length in bytes of the current byte string or
+    /// text string.</summary>
+    /// <value>The length in bytes of the string.</value>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a definite-length byte string or text string.</exception>
+    public int StringLength {
+      get {
+        this.CheckDefiniteString();
+        return (int)this.argument;
+      }
+    }
+
+    /// <summary>Gets the size in bytes of the current floating-point
+    /// number as encoded.</summary>
+    /// <value>2, 4, or 8.</value>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a floating-point number.</exception>
+    public int FloatingPointByteCount {
+      get {
+        this.CheckTokenType(CBORTokenType.FloatingPoint);
+        return this.headByte == 0xf9 ? 2 : (this.headByte == 0xfa ? 4 : 8);
+      }
+    }
+
+    /// <summary>Moves the reader to the next token.</summary>
+    /// <returns><c>true</c> if the reader moved to the next token;
+    /// <c>false</c> if the end of the data was reached after a complete
+    /// data item.</returns>
+    /// <exception cref='PeterO.Cbor.CBORException'>The data is invalid
+    /// CBOR or ends in the middle of a data item.</exception>
+    public bool Read() {
+      int top = this.stackSize - 1;
+      if (top >= 0 && this.stackRemaining[top] == 0) {
+        // All items of a definite-length array or map were read
+        this.PopContainer();
+        return true;
+      }
+      int first = this.reader.ReadByte();
+      if (first < 0) {
+        if (top >= 0 || this.afterTag) {
+          throw new CBORException("Premature end of data");
+        }
+        this.tokenType = CBORTokenType.None;
+        this.majorType = -1;
+        this.depth = 0;
+        return false;
+      }
+      if (first == 0xff) {
+        // Break code; valid only at the end of an indefinite-length item,
+        // and not after a map key or tag
+        if (top < 0 || this.stackRemaining[top] > 0 || this.afterTag ||
+          (this.stackTypes[top] == 5 &&
+            ((-1 - this.stackRemaining[top]) & 1) != 0)) {
+          throw new CBORException("Unexpected break code encountered");
+        }
+        this.PopContainer();
+        return true;
+      }
+      int type = (first >> 5) & 0x07;
+      if (top >= 0 && this.stackTypes[top] <= 3) {
+        // Chunk of an indefinite-length string, which must be a
+        // definite-length string of the same type
+        if (type != this.stackTypes[top]) {
+          throw new CBORException("Unexpected data encountered");
+        }
+        if ((first & 0x1f) == 31) {
+          throw new CBORException("Indefinite-length data not allowed" +
+            " here");
+        }
+      } else if (this.stackSize + this.tagDepth > this.maxDepth) {
+        // NOTE: Checked at each data item rather than when an array, map,
+        // or tag begins, as CBORReader does, so that an empty array or
+        // map is allowed at the limit
+        throw new CBORException("Too deeply nested");
+      }
+      long uadditional = this.reader.ReadHeadArgument(first);
+      if (type != 6 && top >= 0) {
+        // NOTE: Counts down for both definite- and indefinite-length
+        // containers
+        --this.stackRemaining[top];
+      }
+      if (type == 6) {
+        ++this.tagDepth;
+        ++this.pendingTags;
+      }
+      this.afterTag = type == 6;
+      this.depth = this.stackSize;
+      this.headByte = first;
+      this.majorType = type;
+      this.argument = uadditional;
+      bool indefinite = (first & 0x1f) == 31;
+      switch (type) {
+        case 0:
+        case 1:
+          this.tokenType = CBORTokenType.Integer;
+          break;
+        case 2:
+        case 3:
+          this.tokenType = (type == 2) ? CBORTokenType.ByteString :
+            CBORTokenType.TextString;
+          if (indefinite) {
+            this.PushContainer(type, -1);
+          } else {
+            CheckLength(uadditional);
+            this.stringOffset = this.reader.SkipArrayBytes(uadditional);
+            if (type == 3 && !CBORUtilities.CheckUtf8(
+                this.data,
+                this.stringOffset,
+                (int)uadditional)) {
+              throw new CBORException("Invalid UTF-8");
+            }
+          }
+          break;
+        case 4:
+        case 5:
+          this.tokenType = (type == 4) ? CBORTokenType.StartArray :
+            CBORTokenType.StartMap;
+          if (indefinite) {
+            this.PushContainer(type, -1);
+          } else {
+            CheckLength(uadditional);
+            this.PushContainer(
+              type,
+              (type == 5) ? uadditional * 2 : uadditional);
+          }
+          break;
+        case 6:
+          this.tokenType = CBORTokenType.Tag;
+          break;
+        default:
+          this.tokenType = (first >= 0xf9 && first <= 0xfb) ?
+            CBORTokenType.FloatingPoint : CBORTokenType.SimpleValue;
+          break;
+      }
+      if (type != 6) {
+        // The tags just read applied to this data item, which is now
+        // complete unless it was pushed as a container
+        this.tagDepth -= this.pendingTags;
+        this.pendingTags = 0;
+      }
+      return true;
+    }
+
+    /// <summary>Skips the children of the current token. If the current
+    /// token is the start of an array, map, or indefinite-length string,
+    /// moves the reader to the end of that data item. If the current
+    /// token is a tag, moves the reader to the last token of the data
+    /// item the tag applies to. Otherwise, does nothing.</summary>
+    /// <exception cref='PeterO.Cbor.CBORException'>The data is invalid
+    /// CBOR or ends in the middle of a data item.</exception>
+    public void Skip() {
+      while (this.tokenType == CBORTokenType.Tag) {
+        this.Read();
+      }
+      if (this.tokenType == CBORTokenType.StartArray ||
+        this.tokenType == CBORTokenType.StartMap ||
+        this.IsIndefiniteLength) {
+        int startDepth = this.depth;
+        do {
+          this.Read();
+        } while (this.depth > startDepth);
+      }
+    }
+
+    /// <summary>Gets the value of the current integer as a 64-bit signed
+    /// integer.</summary>
+    /// <returns>The value of the current integer.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not an integer.</exception>
+    /// <exception cref='OverflowException'>The integer is less than
+    /// -(2^63) or greater than 2^63 - 1.</exception>
+    public long GetInt64() {
+      this.CheckTokenType(CBORTokenType.Integer);
+      if ((this.argument >> 63) != 0) {
+        throw new OverflowException("This object's value is out of range");
+      }
+      return (this.majorType == 1) ? (-1 - this.argument) : this.argument;
+    }
+
+    /// <summary>Gets the value of the current integer as an arbitrary-
+    /// precision integer.</summary>
+    /// <returns>The value of the current integer.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not an integer.</exception>
+    public EInteger GetEInteger() {
+      this.CheckTokenType(CBORTokenType.Integer);
+      if ((this.argument >> 63) == 0) {
+        return EInteger.FromInt64((this.majorType == 1) ?
+            (-1 - this.argument) : this.argument);
+      }
+      EInteger ei = CBORReader.ToUnsignedEInteger(this.argument);
+      return (this.majorType == 1) ? ei.Add(1).Negate() : ei;
+    }
+
+    /// <summary>Gets the number of the current tag.</summary>
+    /// <returns>The tag number.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a tag.</exception>
+    public EInteger GetTag() {
+      this.CheckTokenType(CBORTokenType.Tag);
+      return CBORReader.ToUnsignedEInteger(this.argument);
+    }
+
+    /// <summary>Gets the number of the current tag as a 64-bit signed
+    /// integer.</summary>
+    /// <returns>The tag number.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a tag.</exception>
+    /// <exception cref='OverflowException'>The tag number is greater than
+    /// 2^63 - 1.</exception>
+    public long GetTagInt64() {
+      this.CheckTokenType(CBORTokenType.Tag);
+      if ((this.argument >> 63) != 0) {
+        throw new OverflowException("This object's value is out of range");
+      }
+      return this.argument;
+    }
+
+    /// <summary>Gets the bits of the current floating-point number, as
+    /// encoded. Use FloatingPointByteCount to find out whether these are
+    /// the bits of a 16-, 32-, or 64-bit floating-point number.</summary>
+    /// <returns>The bits of the floating-point number.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a floating-point number.</exception>
+    public long GetFloatingPointBits() {
+      this.CheckTokenType(CBORTokenType.FloatingPoint);
+      return this.argument;
+    }
+
+    /// <summary>Gets the value of the current floating-point number as a
+    /// 64-bit floating-point number.</summary>
+    /// <returns>The value of the floating-point number.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a floating-point number.</exception>
+    public double GetDouble() {
+      this.CheckTokenType(CBORTokenType.FloatingPoint);
+      long bits = this.argument;
+      if (this.headByte == 0xf9) {
+        bits = CBORUtilities.HalfToDoublePrecision(
+            unchecked((int)this.argument));
+      } else if (this.headByte == 0xfa) {
+        bits = CBORUtilities.SingleToDoublePrecision(
+            unchecked((int)this.argument));
+      }
+      return CBORUtilities.Int64BitsToDouble(bits);
+    }
+
+    /// <summary>Gets the value of the current simple value, such as 20
+    /// for false, 21 for true, 22 for null, or 23 for
+    /// undefined.</summary>
+    /// <returns>The simple value, from 0 through 255.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a simple value.</exception>
+    public int GetSimpleValue() {
+      this.CheckTokenType(CBORTokenType.SimpleValue);
+      return (int)this.argument;
+    }
+
+    /// <summary>Gets a copy of the bytes of the current byte string or
+    /// text string.</summary>
+    /// <returns>A new byte array holding the string's bytes.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a definite-length byte string or text string.</exception>
+    public byte[] GetByteString() {
+      this.CheckDefiniteString();
+      var ret = new byte[(int)this.argument];
+      Array.Copy(this.data, this.stringOffset, ret, 0, ret.Length);
+      return ret;
+    }
+
+    /// <summary>Gets the value of the current text string.</summary>
+    /// <returns>The text string's value.</returns>
+    /// <exception cref='InvalidOperationException'>The current token is
+    /// not a definite-length text string.</exception>
+    public string GetString() {
+      this.CheckTokenType(CBORTokenType.TextString);
+      this.CheckDefiniteString();
+      return DataUtilities.GetUtf8String(
+          this.data,
+          this.stringOffset,
+          (int)this.argument,
+          false);
+    }
+
+    private static void CheckLength(long uadditional) {
+      if ((uadditional >> 31) != 0) {
+        throw new CBORException("Length of " +
+          CBORReader.ToUnsignedEInteger(uadditional).ToString() +
+          " is bigger than supported");
+      }
+    }
+
+    private void CheckTokenType(CBORTokenType expected) {
+      if (this.tokenType != expected) {
+        throw new InvalidOperationException("Not a token of type " +
+          expected);
+      }
+    }
+
+    private void CheckDefiniteString() {
+      if ((this.tokenType != CBORTokenType.ByteString &&
+          this.tokenType != CBORTokenType.TextString) ||
+        this.IsIndefiniteLength) {
+        throw new InvalidOperationException("Not a definite-length" +
+          " string");
+      }
+    }
+
+    private void PushContainer(int type, long remaining) {
+      if (this.stackSize == this.stackTypes.Length) {
+        var newTypes = new int[this.stackSize * 2];
+        var newRemaining = new long[this.stackSize * 2];
+        var newTags = new int[this.stackSize * 2];
+        Array.Copy(this.stackTypes, newTypes, this.stackSize);
+        Array.Copy(this.stackRemaining, newRemaining, this.stackSize);
+        Array.Copy(this.stackTags, newTags, this.stackSize);
+        this.stackTypes = newTypes;
+        this.stackRemaining = newRemaining;
+        this.stackTags = newTags;
+      }
+      this.stackTypes[this.stackSize] = type;
+      this.stackRemaining[this.stackSize] = remaining;
+      // The container's tags stay counted until its end
+      this.stackTags[this.stackSize] = this.pendingTags;
+      this.pendingTags = 0;
+      ++this.stackSize;
+    }
+
+    private void PopContainer() {
+      --this.stackSize;
+      int type = this.stackTypes[this.stackSize];
+      this.tagDepth -= this.stackTags[this.stackSize];
+      this.tokenType = (type == 4) ? CBORTokenType.EndArray :
+        ((type == 5) ? CBORTokenType.EndMap : CBORTokenType.EndString);
+      this.depth = this.stackSize;
+      this.majorType = -1;
+      this.headByte = 0;
+      this.argument = 0;
+      this.afterTag = false;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+
+namespace PeterO.Cbor {
+  /// <summary>Specifies the kind of token that a CBORTokenReader is
+  /// positioned on.</summary>
+  public enum CBORTokenType {
+    /// <summary>No token has been read yet, or the end of the data was
+    /// reached.</summary>
+    None,
+
+    /// <summary>An integer of major type 0 or 1.</summary>
+    Integer,
+
+    /// <summary>A byte string, or a chunk of an indefinite-length byte
+    /// string. If the reader's IsIndefiniteLength property is true, this
+    /// is the start of an indefinite-length byte string, whose chunks
+    /// follow and which ends with an EndString token.</summary>
+    ByteString,
+
+    /// <summary>A text string, or a chunk of an indefinite-length text
+    /// string. If the reader's IsIndefiniteLength property is true, this
+    /// is the start of an indefinite-length text string, whose chunks
+    /// follow and which ends with an EndString token.</summary>
+    TextString,
+
+    /// <summary>The start of an array.</summary>
+    StartArray,
+
+    /// <summary>The end of an array.</summary>
+    EndArray,
+
+    /// <summary>The start of a map. The map's keys and values follow in
+    /// alternation.</summary>
+    StartMap,
+
+    /// <summary>The end of a map.</summary>
+    EndMap,
+
+    /// <summary>The end of an indefinite-length byte or text
+    /// string.</summary>
+    EndString,
+
+    /// <summary>A tag. The data item it applies to follows.</summary>
+    Tag,
+
+    /// <summary>A simple value other than a floating-point number,
+    /// including true, false, null, and undefined.</summary>
+    SimpleValue,
+
+    /// <summary>A 16-, 32-, or 64-bit binary floating-point
+    /// number.</summary>
+    FloatingPoint,
+  }
+}
@@ -172,21 +172,37 @@ internal static class CBORUtilities {
       if (utf16.Length == 0) {
         return utf8.Length == 0 ? 0 : -1;
       }
-      if (utf16.Length == 0) {
-        return utf8.Length == 0 ? 0 : 1;
-      }
       long strAUpperBound = utf16.Length * 3;
       if (strAUpperBound < utf8.Length) {
         return -1;
       }
-      long strBUpperBound = utf16.Length * 3;
-      if (strBUpperBound < utf8.Length) {
+      // Each UTF-16 code unit takes up at least one byte in UTF-8
+      if (utf16.Length > utf8.Length) {
         return 1;
       }
+      // Fast path for strings made only of basic (ASCII) characters, the
+      // usual case for map keys
+      var cmp = 0;
+      var i = 0;
+      for (; i < utf16.Length; ++i) {
+        int c16 = utf16[i];
+        int c8 = ((int)utf8[i]) & 0xff;
+        if (c16 >= 0x80 || c8 >= 0x80) {
+          break;
+        }
+        if (cmp == 0 && c16 != c8) {
+          cmp = (c16 < c8) ? -1 : 1;
+        }
+      }
+      if (i == utf16.Length) {
+        // The UTF-8 form of utf16 is as long as utf16, which is no longer
+        // than utf8
+        return (utf16.Length != utf8.Length) ? -1 : cmp;
+      }
+      cmp = 0;
       var u16pos = 0;
       var u8pos = 0;
       long u16u8length = 0L;
-      var cmp = 0;
       var haveboth = true;
       while (true) {
         int u16 = 0, u8 = 0;
@@ -250,7 +266,12 @@ internal static class CBORUtilities {
     }
 
     public static int Utf8CodePointAt(byte[] utf8, int offset) {
-      int endPos = utf8.Length;
+      return Utf8CodePointAt(utf8, offset, utf8.Length);
+    }
+
+    // Same as the previous method, but treats the given end index
+    // as the end of the UTF-8 bytes
+    public static int Utf8CodePointAt(byte[] utf8, int offset, int endPos) {
       if (offset < 0 || offset >= endPos) {
         return -1;
       }
@@ -358,9 +379,16 @@ internal static class CBORUtilities {
     }
 
     public static bool CheckUtf8(byte[] utf8) {
-      var upos = 0;
+      return CheckUtf8(utf8, 0, utf8.Length);
+    }
+
+    public static bool CheckUtf8(byte[] utf8, int offset, int length) {
+      // Skip over basic characters several bytes at a time; most text
+      // strings consist mostly or entirely of them
+      int upos = offset + DataUtilities.CountAsciiBytes(utf8, offset, length);
+      int endPos = offset + length;
       while (true) {
-        int sc = Utf8CodePointAt(utf8, upos);
+        int sc = Utf8CodePointAt(utf8, upos, endPos);
         if (sc == -1) {
           return true;
         }
@@ -375,6 +403,7 @@ internal static class CBORUtilities {
           upos += 2;
         } else {
           ++upos;
+          upos += DataUtilities.CountAsciiBytes(utf8, upos, endPos - upos);
         }
       }
     }
@@ -489,6 +518,56 @@ internal static class CBORUtilities {
       return 0;
     }
 
+    public static bool ByteSegmentEquals(
+      ArraySegment<byte> a,
+      ArraySegment<byte> b) {
+      if (a.Count != b.Count) {
+        return false;
+      }
+      byte[] arrA = a.Array;
+      byte[] arrB = b.Array;
+      int offA = a.Offset;
+      int offB = b.Offset;
+      for (var i = 0; i < a.Count; ++i) {
+        if (arrA[offA + i] != arrB[offB + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // Same as ByteArrayHashCode for the bytes in the segment
+    public static int ByteSegmentHashCode(ArraySegment<byte> a) {
+      var ret = 19;
+      byte[] arr = a.Array;
+      int end = a.Offset + a.Count;
+      unchecked {
+        ret = (ret * 31) + a.Count;
+        for (int i = a.Offset; i < end; ++i) {
+          ret = (ret * 31) + arr[i];
+        }
+      }
+      return ret;
+    }
+
+    public static int ByteSegmentCompareLengthFirst(
+      ArraySegment<byte> a,
+      ArraySegment<byte> b) {
+      if (a.Count != b.Count) {
+        return a.Count < b.Count ? -1 : 1;
+      }
+      byte[] arrA = a.Array;
+      byte[] arrB = b.Array;
+      int offA = a.Offset;
+      int offB = b.Offset;
+      for (var i = 0; i < a.Count; ++i) {
+        if (arrA[offA + i] != arrB[offB + i]) {
+          return (arrA[offA + i] < arrB[offB + i]) ? -1 : 1;
+        }
+      }
+      return 0;
+    }
+
     public static string TrimDotZero(string str) {
       return (str.Length > 2 && str[str.Length - 1] == '0' && str[str.Length
             - 2] == '.') ? str.Substring(0, str.Length - 2) :
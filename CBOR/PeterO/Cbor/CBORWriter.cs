@@ -0,0 +1,434 @@
+/*
+Written by Peter O.
+Any copyright to this work is released to the Public Domain.
+In case this is not possible, this work is also
+licensed under Creative Commons Zero (CC0):
+http://creativecommons.org/publicdomain/zero/1.0/
+If you like this, you should donate to Peter O.
+at: http://peteroupc.github.io/
+ */
+using System;
+using System.Collections.Generic;
+using System.IO;
+using PeterO;
+using PeterO.Numbers;
+
+namespace PeterO.Cbor {
+  /// <summary>
+  /// <para>Writes CBOR data items to a data stream one at a time, without
+  /// first building a CBOR object that holds all of them. This is useful
+  /// for writing out arrays or maps with very many items, such as rows
+  /// of a table, each of which is written as soon as it's
+  /// available.</para>
+  /// <para>To write an array or map, write its start, then its items
+  /// (for a map, each key followed by its value), then, for an
+  /// indefinite-length array or map, its end. To write a tagged data
+  /// item, write the tag, then the data item. Each method returns this
+  /// writer, so that calls can be chained, as in the following example,
+  /// which writes the array <c>[1, "two", {"three": 3}]</c>.</para>
+  /// <code>new CBORWriter(stream).WriteStartArray(3).Write(1).Write("two")
+  /// .WriteStartMap(1).Write("three").Write(3);</code>
+  /// <para>In debug builds of this library, the writer checks that the
+  /// number of items written to each array or map matches its length,
+  /// and that indefinite-length arrays and maps are ended in the right
+  /// order, throwing InvalidOperationException otherwise. Other builds
+  /// don't check this.</para>
+  /// <para>This class doesn't close the data stream, and is not thread
+  /// safe.</para></summary>
+  public sealed class CBORWriter {
+    private readonly Stream stream;
+    private readonly CBOREncodeOptions options;
+    #if DEBUG
+    // An array or map being written
+    private sealed class Container {
+      public bool IsMap;
+      // Number of data items left to write (twice the number of map
+      // entries), or -1 if the array or map has indefinite length
+      public long Remaining;
+      public long ItemsWritten;
+    }
+
+    private readonly List<Container> containers;
+    // If true, a tag was just written, and the data item it applies to
+    // was already counted
+    private bool afterTag;
+    #endif
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORWriter'/> class that writes to a data
+    /// stream with the default options.</summary>
+    /// <param name='stream'>A writable data stream.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> is null.</exception>
+    public CBORWriter(Stream stream) : this(stream, CBOREncodeOptions.Default) {
+    }
+
+    /// <summary>Initializes a new instance of the
+    /// <see cref='PeterO.Cbor.CBORWriter'/> class.</summary>
+    /// <param name='stream'>A writable data stream.</param>
+    /// <param name='options'>Options for encoding the data to CBOR, which
+    /// apply to text strings, floating-point numbers, and CBOR objects
+    /// written with this writer.</param>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='stream'/> or <paramref name='options'/> is
+    /// null.</exception>
+    public CBORWriter(Stream stream, CBOREncodeOptions options) {
+      if (stream == null) {
+        throw new ArgumentNullException(nameof(stream));
+      }
+      if (options == null) {
+        throw new ArgumentNullException(nameof(options));
+      }
+      this.stream = stream;
+      this.options = options;
+      #if DEBUG
+      this.containers = new List<Container>();
+      #endif
+    }
+
+    /// <summary>Writes the start of an array with the given number of
+    /// items. The items are written next.</summary>
+    /// <param name='count'>The number of items in the array.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentException'>The parameter <paramref
+    /// name='count'/> is less than 0.</exception>
+    public CBORWriter WriteStartArray(long count) {
+      if (count < 0) {
+        throw new ArgumentException("count (" + count + ") is less than 0");
+      }
+      this.StartContainer(false, count);
+      CBORObject.WriteValue(this.stream, 4, count);
+      return this;
+    }
+
+    /// <summary>Writes the start of an indefinite-length array. The items
+    /// are written next, followed by a call to <c>WriteEndArray</c>.</summary>
+    /// <returns>This writer.</returns>
+    public CBORWriter WriteStartArray() {
+      this.StartContainer(false, -1);
+      this.stream.WriteByte(0x9f);
+      return this;
+    }
+
+    /// <summary>Writes the end of an indefinite-length array.</summary>
+    /// <returns>This writer.</returns>
+    public CBORWriter WriteEndArray() {
+      this.EndContainer(false);
+      this.stream.WriteByte(0xff);
+      return this;
+    }
+
+    /// <summary>Writes the start of a map with the given number of
+    /// entries. The entries are written next, each as a key followed by
+    /// its value.</summary>
+    /// <param name='count'>The number of entries in the map.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentException'>The parameter <paramref
+    /// name='count'/> is less than 0.</exception>
+    public CBORWriter WriteStartMap(long count) {
+      if (count < 0) {
+        throw new ArgumentException("count (" + count + ") is less than 0");
+      }
+      this.StartContainer(true, count);
+      CBORObject.WriteValue(this.stream, 5, count);
+      return this;
+    }
+
+    /// <summary>Writes the start of an indefinite-length map. The entries
+    /// are written next, each as a key followed by its value, followed by
+    /// a call to <c>WriteEndMap</c>.</summary>
+    /// <returns>This writer.</returns>
+    public CBORWriter WriteStartMap() {
+      this.StartContainer(true, -1);
+      this.stream.WriteByte(0xbf);
+      return this;
+    }
+
+    /// <summary>Writes the end of an indefinite-length map.</summary>
+    /// <returns>This writer.</returns>
+    public CBORWriter WriteEndMap() {
+      this.EndContainer(true);
+      this.stream.WriteByte(0xff);
+      return this;
+    }
+
+    /// <summary>Writes a CBOR tag. The data item the tag applies to is
+    /// written next.</summary>
+    /// <param name='tag'>The tag number.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentException'>The parameter <paramref
+    /// name='tag'/> is less than 0.</exception>
+    public CBORWriter WriteTag(long tag) {
+      if (tag < 0) {
+        throw new ArgumentException("tag (" + tag + ") is less than 0");
+      }
+      this.BeginTag();
+      CBORObject.WriteValue(this.stream, 6, tag);
+      return this;
+    }
+
+    /// <summary>Writes a CBOR tag given as an arbitrary-precision integer.
+    /// The data item the tag applies to is written next.</summary>
+    /// <param name='tag'>The tag number.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='tag'/> is null.</exception>
+    /// <exception cref='ArgumentException'>The parameter <paramref
+    /// name='tag'/> is less than 0 or greater than 2^64-1.</exception>
+    public CBORWriter WriteTag(EInteger tag) {
+      if (tag == null) {
+        throw new ArgumentNullException(nameof(tag));
+      }
+      this.BeginTag();
+      CBORObject.WriteValue(this.stream, 6, tag);
+      return this;
+    }
+
+    /// <summary>Writes an integer.</summary>
+    /// <param name='value'>The value to write.</param>
+    /// <returns>This writer.</returns>
+    public CBORWriter Write(long value) {
+      this.BeginItem();
+      CBORObject.Write(value, this.stream);
+      return this;
+    }
+
+    /// <summary>Writes an arbitrary-precision integer.</summary>
+    /// <param name='value'>The value to write. Can be null, in which case
+    /// null is written.</param>
+    /// <returns>This writer.</returns>
+    public CBORWriter Write(EInteger value) {
+      this.BeginItem();
+      CBORObject.Write(value, this.stream);
+      return this;
+    }
+
+    /// <summary>Writes a 64-bit floating-point number, in its shortest
+    /// form that keeps its value unless the Float64 property of this
+    /// writer's options is set.</summary>
+    /// <param name='value'>The value to write.</param>
+    /// <returns>This writer.</returns>
+    public CBORWriter Write(double value) {
+      this.BeginItem();
+      CBORObject.WriteFloatingPointBits(
+        this.stream,
+        CBORUtilities.DoubleToInt64Bits(value),
+        8,
+        !this.options.Float64);
+      return this;
+    }
+
+    /// <summary>Writes a Boolean value.</summary>
+    /// <param name='value'>The value to write.</param>
+    /// <returns>This writer.</returns>
+    public CBORWriter Write(bool value) {
+      this.BeginItem();
+      this.stream.WriteByte(value ? (byte)0xf5 : (byte)0xf4);
+      return this;
+    }
+
+    /// <summary>Writes a text string.</summary>
+    /// <param name='value'>The text string to write. Can be null, in which
+    /// case null is written.</param>
+    /// <returns>This writer.</returns>
+    public CBORWriter Write(string value) {
+      this.BeginItem();
+      CBORObject.Write(value, this.stream, this.options);
+      return this;
+    }
+
+    /// <summary>Writes a byte string.</summary>
+    /// <param name='value'>The bytes to write. Can be null, in which case
+    /// null is written.</param>
+    /// <returns>This writer.</returns>
+    public CBORWriter Write(byte[] value) {
+      if (value == null) {
+        return this.WriteNull();
+      }
+      return this.Write(value, 0, value.Length);
+    }
+
+    /// <summary>Writes a byte string holding a portion of a byte
+    /// array.</summary>
+    /// <param name='data'>A byte array.</param>
+    /// <param name='offset'>An index, starting at 0, showing where the
+    /// desired portion of <paramref name='data'/> begins.</param>
+    /// <param name='count'>The length, in bytes, of the desired portion
+    /// of <paramref name='data'/>.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public CBORWriter Write(byte[] data, int offset, int count) {
+      CBORObject.CheckByteArrayPortion(data, offset, count);
+      this.BeginItem();
+      CBORObject.WriteValue(this.stream, 2, count);
+      this.stream.Write(data, offset, count);
+      return this;
+    }
+
+    /// <summary>Writes a CBOR object, using this writer's
+    /// options.</summary>
+    /// <param name='value'>The CBOR object to write. Can be null, in
+    /// which case null is written.</param>
+    /// <returns>This writer.</returns>
+    public CBORWriter Write(CBORObject value) {
+      if (value == null) {
+        return this.WriteNull();
+      }
+      this.BeginItem();
+      value.WriteTo(this.stream, this.options);
+      return this;
+    }
+
+    /// <summary>Writes the null value.</summary>
+    /// <returns>This writer.</returns>
+    public CBORWriter WriteNull() {
+      this.BeginItem();
+      this.stream.WriteByte(0xf6);
+      return this;
+    }
+
+    /// <summary>Writes the undefined value.</summary>
+    /// <returns>This writer.</returns>
+    public CBORWriter WriteUndefined() {
+      this.BeginItem();
+      this.stream.WriteByte(0xf7);
+      return this;
+    }
+
+    /// <summary>Writes a simple value.</summary>
+    /// <param name='value'>The simple value, which is from 0 to 23 or
+    /// from 32 to 255.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentException'>The parameter <paramref
+    /// name='value'/> is less than 0, greater than 255, or from 24 to
+    /// 31.</exception>
+    public CBORWriter WriteSimpleValue(int value) {
+      if (value < 0 || value > 255 || (value >= 24 && value < 32)) {
+        throw new ArgumentException("value (" + value + ") is not a" +
+          " valid simple value");
+      }
+      this.BeginItem();
+      CBORObject.WriteValue(this.stream, 7, value);
+      return this;
+    }
+
+    /// <summary>Writes a data item that is already encoded in CBOR, such
+    /// as one encoded earlier and kept for reuse, by copying its bytes as
+    /// they are. The bytes are not checked, and they count as a single
+    /// data item in the array or map being written.</summary>
+    /// <param name='data'>A byte array.</param>
+    /// <param name='offset'>An index, starting at 0, showing where the
+    /// encoded data item begins in <paramref name='data'/>.</param>
+    /// <param name='count'>The length, in bytes, of the encoded data
+    /// item.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    /// <exception cref='ArgumentException'>Either <paramref
+    /// name='offset'/> or <paramref name='count'/> is less than 0 or
+    /// greater than <paramref name='data'/> 's length, or <paramref
+    /// name='data'/> 's length minus <paramref name='offset'/> is less
+    /// than <paramref name='count'/>.</exception>
+    public CBORWriter WriteEncoded(byte[] data, int offset, int count) {
+      CBORObject.CheckByteArrayPortion(data, offset, count);
+      this.BeginItem();
+      this.stream.Write(data, offset, count);
+      return this;
+    }
+
+    /// <summary>Writes a data item that is already encoded in CBOR by
+    /// copying its bytes as they are. The bytes are not checked, and
+    /// they count as a single data item in the array or map being
+    /// written.</summary>
+    /// <param name='data'>A byte array holding the encoded data
+    /// item.</param>
+    /// <returns>This writer.</returns>
+    /// <exception cref='ArgumentNullException'>The parameter <paramref
+    /// name='data'/> is null.</exception>
+    public CBORWriter WriteEncoded(byte[] data) {
+      if (data == null) {
+        throw new ArgumentNullException(nameof(data));
+      }
+      return this.WriteEncoded(data, 0, data.Length);
+    }
+
+    // The methods below check the structure of the data items written
+    // in debug builds only
+
+    private void BeginItem() {
+      #if DEBUG
+      if (this.afterTag) {
+        this.afterTag = false;
+      } else {
+        this.CountItem();
+      }
+      #endif
+    }
+
+    private void BeginTag() {
+      #if DEBUG
+      if (!this.afterTag) {
+        this.CountItem();
+        this.afterTag = true;
+      }
+      #endif
+    }
+
+    private void StartContainer(bool isMap, long count) {
+      #if DEBUG
+      this.BeginItem();
+      var container = new Container();
+      container.IsMap = isMap;
+      container.Remaining = (count < 0) ? -1 : (isMap ? count * 2 : count);
+      this.containers.Add(container);
+      #endif
+    }
+
+    private void EndContainer(bool isMap) {
+      #if DEBUG
+      this.PopFinishedContainers();
+      int last = this.containers.Count - 1;
+      if (this.afterTag || last < 0 || this.containers[last].Remaining >= 0 ||
+        this.containers[last].IsMap != isMap) {
+        throw new InvalidOperationException(isMap ?
+          "Not in an indefinite-length map" :
+          "Not in an indefinite-length array");
+      }
+      if (isMap && (this.containers[last].ItemsWritten & 1) != 0) {
+        throw new InvalidOperationException("Map key has no value");
+      }
+      this.containers.RemoveAt(last);
+      #endif
+    }
+
+    #if DEBUG
+    private void CountItem() {
+      this.PopFinishedContainers();
+      int last = this.containers.Count - 1;
+      if (last >= 0) {
+        Container container = this.containers[last];
+        ++container.ItemsWritten;
+        if (container.Remaining > 0) {
+          --container.Remaining;
+        }
+      }
+    }
+
+    // Closes the definite-length arrays and maps whose items were all
+    // written
+    private void PopFinishedContainers() {
+      int last = this.containers.Count - 1;
+      while (last >= 0 && this.containers[last].Remaining == 0) {
+        this.containers.RemoveAt(last);
+        --last;
+      }
+    }
+    #endif
+  }
+}
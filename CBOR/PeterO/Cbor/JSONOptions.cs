@@ -144,14 +144,15 @@ public JSONOptions(bool base64Padding, bool replaceSurrogates)
     /// of basic upper-case and/or basic lower-case letters:
     /// <c>base64padding</c>, <c>replacesurrogates</c>,
     /// <c>allowduplicatekeys</c>, <c>preservenegativezero</c>,
-    /// <c>numberconversion</c>. Other keys are ignored in this version of
-    /// the CBOR library. (Keys are compared using a basic case-insensitive
-    /// comparison, in which two strings are equal if they match after
+    /// <c>keepkeyorder</c>, <c>numberconversion</c>. Other keys are
+    /// ignored in this version of the CBOR library. (Keys are compared
+    /// using a basic case-insensitive comparison, in which two strings
+    /// are equal if they match after
     /// converting the basic upper-case letters A to Z (U+0041 to U+005A)
     /// in both strings to basic lower-case letters.) If two or more
     /// key/value pairs have equal keys (in a basic case-insensitive
     /// comparison), the value given for the last such key is used. The
-    /// first four keys just given can have a value of <c>1</c>,
+    /// first five keys just given can have a value of <c>1</c>,
     /// <c>true</c>, <c>yes</c>, or <c>on</c> (where the letters can be
     /// any combination of basic upper-case and/or basic lower-case
     /// letters), which means true, and any other value meaning false. The
@@ -183,6 +184,7 @@ public JSONOptions(bool base64Padding, bool replaceSurrogates)
       this.AllowDuplicateKeys = parser.GetBoolean(
         "allowduplicatekeys",
         false);
+      this.KeepKeyOrder = parser.GetBoolean("keepkeyorder", false);
       this.Base64Padding = parser.GetBoolean("base64padding", true);
       this.ReplaceSurrogates = parser.GetBoolean(
         "replacesurrogates",
@@ -207,6 +209,8 @@ public JSONOptions(bool base64Padding, bool replaceSurrogates)
         .Append(";numberconversion=").Append(this.FromNumberConversion())
         .Append(";allowduplicatekeys=")
         .Append(this.AllowDuplicateKeys ? "true" : "false")
+        .Append(";keepkeyorder=")
+        .Append(this.KeepKeyOrder ? "true" : "false")
         .ToString();
     }
 
@@ -309,6 +313,20 @@ public JSONOptions(bool base64Padding, bool replaceSurrogates)
       private set;
     }
 
+    /// <summary>Gets a value indicating whether JSON objects decoded to
+    /// CBOR maps keep their keys in the order they appear in the JSON
+    /// text, as maps created with <c>CBORObject.NewOrderedMap</c> do.
+    /// Such maps find keys by their hash codes rather than by comparing
+    /// them with other keys, so looking up keys in them is generally
+    /// faster, especially in maps with many keys.</summary>
+    /// <value>A value indicating whether maps decoded from JSON keep
+    /// their keys in the order they appear. The default is false, meaning
+    /// that the keys of decoded maps are kept in sorted order.</value>
+    public bool KeepKeyOrder {
+      get;
+      private set;
+    }
+
     /// <summary>Gets a value indicating whether surrogate code points not
     /// part of a surrogate pair (which consists of two consecutive
     /// <c>char</c> s forming one Unicode code point) are each replaced
@@ -87,5 +87,27 @@ internal sealed class OptionsParser {
       }
       return defaultValue;
     }
+
+    public int GetNonNegativeInt32(string key, int defaultValue) {
+      string lckey = DataUtilities.ToLowerCaseAscii(key);
+      if (!this.dict.ContainsKey(lckey)) {
+        return defaultValue;
+      }
+      string value = this.dict[lckey];
+      if (value.Length == 0) {
+        throw new ArgumentException("Invalid value for " + key + ": " +
+          value);
+      }
+      var ret = 0;
+      for (var i = 0; i < value.Length; ++i) {
+        int digit = value[i] - '0';
+        if (digit < 0 || digit > 9 || ret > (Int32.MaxValue - digit) / 10) {
+          throw new ArgumentException("Invalid value for " + key + ": " +
+            value);
+        }
+        ret = (ret * 10) + digit;
+      }
+      return ret;
+    }
   }
 }
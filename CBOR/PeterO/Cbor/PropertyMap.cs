@@ -342,6 +342,75 @@ private sealed class ReadOnlyWrapper<T> : ICollection<T> {
       }
     }
 
+    private sealed class ReadOnlyDictionary<TKey, TValue> :
+      IDictionary<TKey, TValue> {
+      private readonly IDictionary<TKey, TValue> dict;
+      public ReadOnlyDictionary(IDictionary<TKey, TValue> dict) {
+        this.dict = dict;
+      }
+      public TValue this[TKey key] {
+        get {
+          return this.dict[key];
+        }
+        set {
+          throw new NotSupportedException();
+        }
+      }
+      public void Add(KeyValuePair<TKey, TValue> kvp) {
+        throw new NotSupportedException();
+      }
+      public void Add(TKey k, TValue v) {
+        throw new NotSupportedException();
+      }
+      public void Clear() {
+        throw new NotSupportedException();
+      }
+      public void CopyTo(KeyValuePair<TKey, TValue>[] a, int off) {
+        this.dict.CopyTo(a, off);
+      }
+      public bool Remove(KeyValuePair<TKey, TValue> kvp) {
+        throw new NotSupportedException();
+      }
+      public bool Remove(TKey key) {
+        throw new NotSupportedException();
+      }
+      public bool Contains(KeyValuePair<TKey, TValue> kvp) {
+        return this.dict.Contains(kvp);
+      }
+      public bool ContainsKey(TKey key) {
+        return this.dict.ContainsKey(key);
+      }
+      public bool TryGetValue(TKey key, out TValue val) {
+        return this.dict.TryGetValue(key, out val);
+      }
+      public int Count {
+        get {
+          return this.dict.Count;
+        }
+      }
+      public bool IsReadOnly {
+        get {
+          return true;
+        }
+      }
+      public ICollection<TKey> Keys {
+        get {
+          return new ReadOnlyWrapper<TKey>(this.dict.Keys);
+        }
+      }
+      public ICollection<TValue> Values {
+        get {
+          return new ReadOnlyWrapper<TValue>(this.dict.Values);
+        }
+      }
+      public IEnumerator<KeyValuePair<TKey, TValue>> GetEnumerator() {
+        return this.dict.GetEnumerator();
+      }
+      IEnumerator IEnumerable.GetEnumerator() {
+        return ((IEnumerable)this.dict).GetEnumerator();
+      }
+    }
+
     private sealed class PropertyData {
       private string name;
 
@@ -909,6 +978,11 @@ private sealed class PropertyData {
       return new OrderedDictionary<CBORObject, CBORObject>();
     }
 
+    public static IDictionary<TKey, TValue> ReadOnlyDict<TKey, TValue>(
+      IDictionary<TKey, TValue> dict) {
+      return new ReadOnlyDictionary<TKey, TValue>(dict);
+    }
+
     public static object FindOneArgumentMethod(
       object obj,
       string name,
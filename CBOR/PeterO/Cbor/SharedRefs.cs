@@ -24,6 +24,17 @@ internal class SharedRefs {
       this.sharedObjects.Add(obj);
     }
 
+    // Reserves a slot for a shared object whose decoding has begun, and
+    // returns the slot's index
+    public int Reserve() {
+      this.sharedObjects.Add(null);
+      return this.sharedObjects.Count - 1;
+    }
+
+    public void SetObject(int index, CBORObject obj) {
+      this.sharedObjects[index] = obj;
+    }
+
     public CBORObject GetObject(long smallIndex) {
       if (smallIndex < 0) {
         throw new CBORException("Unexpected index");
@@ -33,10 +44,7 @@ internal class SharedRefs {
           " is bigger than supported ");
       }
       var index = (int)smallIndex;
-      if (index >= this.sharedObjects.Count) {
-        throw new CBORException("Index " + index + " is not valid");
-      }
-      return this.sharedObjects[index];
+      return this.GetObjectAt(index);
     }
 
     public CBORObject GetObject(EInteger bigIndex) {
@@ -48,10 +56,21 @@ internal class SharedRefs {
           " is bigger than supported ");
       }
       var index = (int)bigIndex;
+      return this.GetObjectAt(index);
+    }
+
+    private CBORObject GetObjectAt(int index) {
       if (index >= this.sharedObjects.Count) {
         throw new CBORException("Index " + index + " is not valid");
       }
-      return this.sharedObjects[index];
+      CBORObject obj = this.sharedObjects[index];
+      if (obj == null) {
+        // Only arrays and maps are available while they're being
+        // decoded
+        throw new CBORException("Index " + index +
+          " refers to an object not yet decoded");
+      }
+      return obj;
     }
   }
 }
@@ -55,25 +55,30 @@ internal class StringRefs {
           ") is less than " + "0 ");
       }
       #endif
-      var addStr = false;
       List<CBORObject> lastList = this.stack[this.stack.Count - 1];
-      if (lastList.Count < 24) {
-        addStr |= lengthHint >= 3;
-      } else if (lastList.Count < 256) {
-        addStr |= lengthHint >= 4;
-      } else if (lastList.Count < 65536) {
-        addStr |= lengthHint >= 5;
-      } else {
-        // NOTE: lastList's size can't be higher than (2^64)-1
-        addStr |= lengthHint >= 7;
-      }
-      // NOTE: An additional branch, with lengthHint >= 11, would
-      // be needed if the size could be higher than (2^64)-1
-      if (addStr) {
+      if (IsReferable(lastList.Count, lengthHint)) {
         lastList.Add(str);
       }
     }
 
+    // Gets whether a string with the given length in bytes is given an
+    // index in a namespace that already has the given number of strings,
+    // namely, whether a reference to it is shorter than the string
+    public static bool IsReferable(int count, long length) {
+      if (count < 24) {
+        return length >= 3;
+      } else if (count < 256) {
+        return length >= 4;
+      } else if (count < 65536) {
+        return length >= 5;
+      } else {
+        // NOTE: The namespace's size can't be higher than (2^64)-1;
+        // an additional branch, with length >= 11, would be needed
+        // if it could
+        return length >= 7;
+      }
+    }
+
     public CBORObject GetString(long smallIndex) {
       if (smallIndex < 0) {
         throw new CBORException("Unexpected index");
@@ -37,6 +37,8 @@ public static class DataUtilities {
 // TODO: In CodePointAt/CodePointBefore, consider adding
 // mode to return -2 or throw an exception on unpaired surrogate
     private const int StreamedStringBufferLength = 4096;
+    // Top bit of each byte in a 64-bit integer
+    private const long HighBitsMask = unchecked((long)0x8080808080808080L);
 
     /// <summary>Generates a text string from a UTF-8 byte array.</summary>
     /// <param name='bytes'>A byte array containing text encoded in
@@ -53,11 +55,7 @@ public static class DataUtilities {
       if (bytes == null) {
         throw new ArgumentNullException(nameof(bytes));
       }
-      var b = new StringBuilder();
-      if (ReadUtf8FromBytes(bytes, 0, bytes.Length, b, replace) != 0) {
-        throw new ArgumentException("Invalid UTF-8");
-      }
-      return b.ToString();
+      return GetUtf8StringInternal(bytes, 0, bytes.Length, replace);
     }
 
     /// <summary>Finds the number of Unicode code points in the given text
@@ -133,13 +131,100 @@ public static class DataUtilities {
         throw new ArgumentException("bytes's length minus " + offset + "(" +
           (bytes.Length - offset) + ") is less than " + bytesCount);
       }
-      var b = new StringBuilder();
-      if (ReadUtf8FromBytes(bytes, offset, bytesCount, b, replace) != 0) {
+      return GetUtf8StringInternal(bytes, offset, bytesCount, replace);
+    }
+
+    private static string GetUtf8StringInternal(
+      byte[] bytes,
+      int offset,
+      int bytesCount,
+      bool replace) {
+      int asciiCount = CountAsciiBytes(bytes, offset, bytesCount);
+      if (asciiCount == bytesCount) {
+        // Each byte is a character of its own
+        var chars = new char[bytesCount];
+        for (var i = 0; i < bytesCount; ++i) {
+          chars[i] = (char)bytes[offset + i];
+        }
+        return new String(chars);
+      }
+      var b = new StringBuilder(bytesCount);
+      for (var i = 0; i < asciiCount; ++i) {
+        b.Append((char)bytes[offset + i]);
+      }
+      // NOTE: The first byte after the basic characters starts a
+      // new sequence
+      if (ReadUtf8FromBytes(
+          bytes,
+          offset + asciiCount,
+          bytesCount - asciiCount,
+          b,
+          replace) != 0) {
         throw new ArgumentException("Invalid UTF-8");
       }
       return b.ToString();
     }
 
+    /// <summary>Finds the number of bytes, starting at the given offset,
+    /// that come before the first byte that isn't a basic character
+    /// (U+0000 to U+007F) in UTF-8. Checks sixteen bytes at a time where
+    /// possible.</summary>
+    /// <param name='data'>A byte array.</param>
+    /// <param name='offset'>Offset into the byte array to start
+    /// checking.</param>
+    /// <param name='count'>Number of bytes to check.</param>
+    /// <returns>The number of basic characters found.</returns>
+    internal static int CountAsciiBytes(byte[] data, int offset, int count) {
+      int pos = offset;
+      int endPos = offset + count;
+      while (endPos - pos >= 16) {
+        long bits = BitConverter.ToInt64(data, pos) |
+          BitConverter.ToInt64(data, pos + 8);
+        if ((bits & HighBitsMask) != 0) {
+          break;
+        }
+        pos += 16;
+      }
+      if (endPos - pos >= 8 &&
+        (BitConverter.ToInt64(data, pos) & HighBitsMask) == 0) {
+        pos += 8;
+      }
+      while (pos < endPos && (data[pos] & 0x80) == 0) {
+        ++pos;
+      }
+      return pos - offset;
+    }
+
+    // Encodes a string in UTF-8 if it contains only basic characters
+    // (U+0000 to U+007F); otherwise, returns null
+    private static byte[] GetAsciiBytes(string str) {
+      var bytes = new byte[str.Length];
+      var i = 0;
+      int end4 = str.Length - 3;
+      while (i < end4) {
+        int c0 = str[i];
+        int c1 = str[i + 1];
+        int c2 = str[i + 2];
+        int c3 = str[i + 3];
+        if ((c0 | c1 | c2 | c3) >= 0x80) {
+          return null;
+        }
+        bytes[i] = (byte)c0;
+        bytes[i + 1] = (byte)c1;
+        bytes[i + 2] = (byte)c2;
+        bytes[i + 3] = (byte)c3;
+        i += 4;
+      }
+      while (i < str.Length) {
+        int c = str[i];
+        if (c >= 0x80) {
+          return null;
+        }
+        bytes[i++] = (byte)c;
+      }
+      return bytes;
+    }
+
     /// <summary>
     /// <para>Encodes a string in UTF-8 as a byte array. This method does
     /// not insert a byte-order mark (U+FEFF) at the beginning of the
@@ -203,7 +288,7 @@ public static class DataUtilities {
             throw new ArgumentException("Unpaired surrogate code point");
           }
         }
-        if (c <= 0x80) {
+        if (c < 0x80) {
           return new byte[] { (byte)c };
         } else if (c <= 0x7ff) {
           return new byte[] {
@@ -228,10 +313,16 @@ public static class DataUtilities {
             (byte)(0x80 | ((c >> 6) & 0x3f)),
             (byte)(0x80 | (c & 0x3f)),
           };
-        } else if (!lenientLineBreaks && c <= 0x80 && c2 <= 0x80) {
+        } else if (!lenientLineBreaks && c < 0x80 && c2 < 0x80) {
           return new byte[] { (byte)c, (byte)c2 };
         }
       }
+      if (!lenientLineBreaks) {
+        byte[] asciiBytes = GetAsciiBytes(str);
+        if (asciiBytes != null) {
+          return asciiBytes;
+        }
+      }
       try {
         using (var ms = new MemoryStream()) {
           if (WriteUtf8(str, 0, str.Length, ms, replace, lenientLineBreaks) !=
@@ -0,0 +1,108 @@
+using System;
+using System.Collections.Generic;
+using System.IO;
+using NUnit.Framework;
+using PeterO;
+using PeterO.Cbor;
+
+namespace Test {
+  [TestFixture]
+  public class CBORIncrementalDecoderTest {
+    private static List<CBORObject> FeedInPieces(
+      byte[] bytes,
+      IRandomGenExtended rand,
+      int maxPiece) {
+      var decoder = new CBORIncrementalDecoder();
+      var list = new List<CBORObject>();
+      var pos = 0;
+      while (pos < bytes.Length) {
+        int piece = Math.Min(
+            bytes.Length - pos,
+            rand.GetInt32(maxPiece) + 1);
+        decoder.Feed(bytes, pos, piece);
+        pos += piece;
+        CBORObject obj;
+        while (decoder.TryGetNext(out obj)) {
+          list.Add(obj);
+        }
+      }
+      Assert.AreEqual(0, decoder.BufferedCount);
+      return list;
+    }
+
+    [Test]
+    public void TestRandomPieces() {
+      var r = new RandomGenerator();
+      for (var i = 0; i < 200; ++i) {
+        var objs = new CBORObject[r.GetInt32(5) + 1];
+        using (var ms = new MemoryStream()) {
+          for (var j = 0; j < objs.Length; ++j) {
+            objs[j] = CBORTestCommon.RandomCBORObject(r);
+            objs[j].WriteTo(ms);
+          }
+          byte[] bytes = ms.ToArray();
+          List<CBORObject> list = FeedInPieces(
+              bytes,
+              r,
+              i < 100 ? 1 : 100);
+          Assert.AreEqual(objs.Length, list.Count);
+          for (var j = 0; j < objs.Length; ++j) {
+            Assert.AreEqual(objs[j], list[j]);
+          }
+        }
+      }
+    }
+
+    [Test]
+    public void TestIndefiniteLength() {
+      // [_ "ab" (_ h'01', h'02'), {_ 1: 2}], 0
+      var bytes = new byte[] {
+        0x9f, 0x62, 0x61, 0x62, 0x5f, 0x41, 0x01, 0x41, 0x02, 0xff,
+        0xbf, 0x01, 0x02, 0xff, 0xff, 0x00,
+      };
+      var decoder = new CBORIncrementalDecoder();
+      CBORObject obj;
+      for (var i = 0; i < bytes.Length - 2; ++i) {
+        decoder.Feed(bytes, i, 1);
+        Assert.IsFalse(decoder.TryGetNext(out obj));
+        Assert.IsNull(obj);
+      }
+      decoder.Feed(bytes, bytes.Length - 2, 2);
+      Assert.IsTrue(decoder.TryGetNext(out obj));
+      Assert.AreEqual(3, obj.Count);
+      Assert.AreEqual("ab", obj[0].AsString());
+      Assert.AreEqual(1, decoder.BufferedCount);
+      Assert.IsTrue(decoder.TryGetNext(out obj));
+      Assert.AreEqual(0, obj.AsInt32());
+      Assert.IsFalse(decoder.TryGetNext(out obj));
+    }
+
+    [Test]
+    public void TestInvalid() {
+      var decoder = new CBORIncrementalDecoder();
+      CBORObject obj;
+      // Invalid head, then a valid data item
+      decoder.Feed(new byte[] { 0x81, 0x1c, 0x01 });
+      try {
+        decoder.TryGetNext(out obj);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      Assert.IsTrue(decoder.TryGetNext(out obj));
+      Assert.AreEqual(1, obj.AsInt32());
+      try {
+        decoder.Feed(null);
+        Assert.Fail("Should have failed");
+      } catch (ArgumentNullException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+  }
+}
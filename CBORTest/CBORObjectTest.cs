@@ -1886,6 +1886,210 @@ public void TestAsStringAzureIoT()
       }
     }
 
+    [Test]
+    public void TestDecodeLargeMapsAndArrays() {
+      CBORObject map = CBORObject.NewMap();
+      CBORObject array = CBORObject.NewArray();
+      for (var i = 0; i < 2000; ++i) {
+        map.Add("key" + i, i);
+        array.Add(i);
+      }
+      CBORObject cbor = CBORObject.NewArray().Add(map).Add(array);
+      byte[] bytes = cbor.EncodeToBytes();
+      Assert.AreEqual(cbor, CBORObject.DecodeFromBytes(bytes));
+      using (var ms = new MemoryStream(bytes)) {
+        Assert.AreEqual(cbor, CBORObject.Read(ms));
+      }
+      Assert.AreEqual(cbor, CBORObject.Read(new TrickleStream(bytes, 100)));
+      // Duplicate keys in an indefinite-length map
+      bytes = new byte[] { 0xbf, 0x01, 0x00, 0x01, 0x03, 0xff };
+      try {
+        CBORObject.DecodeFromBytes(bytes);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // The last value wins if duplicate keys are allowed
+      var dupOptions = new CBOREncodeOptions("allowduplicatekeys=1");
+      CBORObject dup = CBORObject.DecodeFromBytes(bytes, dupOptions);
+      Assert.AreEqual(1, dup.Count);
+      Assert.AreEqual(3, dup[CBORObject.FromObject(1)].AsInt32());
+      bytes = new byte[] { 0xa2, 0x01, 0x00, 0x01, 0x03 };
+      dup = CBORObject.DecodeFromBytes(bytes, dupOptions);
+      Assert.AreEqual(1, dup.Count);
+      Assert.AreEqual(3, dup[CBORObject.FromObject(1)].AsInt32());
+    }
+
+    [Test]
+    public void TestDecodeNestedOversizedArrays() {
+      // Each of many nested arrays declares a length that fits in the
+      // remaining data; decoding must not reserve room for all of them
+      var bytes = new byte[1 << 20];
+      for (var i = 0; i < 400; ++i) {
+        int length = bytes.Length - (5 * (i + 1));
+        bytes[5 * i] = (byte)0x9a;
+        bytes[(5 * i) + 1] = (byte)((length >> 24) & 0xff);
+        bytes[(5 * i) + 2] = (byte)((length >> 16) & 0xff);
+        bytes[(5 * i) + 3] = (byte)((length >> 8) & 0xff);
+        bytes[(5 * i) + 4] = (byte)(length & 0xff);
+      }
+      try {
+        CBORObject.DecodeFromBytes(bytes);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      using (var ms = new MemoryStream(bytes)) {
+        try {
+          CBORObject.Read(ms);
+          Assert.Fail("Should have failed");
+        } catch (CBORException) {
+          // NOTE: Intentionally empty
+        } catch (Exception ex) {
+          Assert.Fail(ex.ToString());
+          throw new InvalidOperationException(String.Empty, ex);
+        }
+      }
+    }
+
+    [Test]
+    public void TestDecodeSequenceFromBytesParallel() {
+      var r = new RandomGenerator();
+      byte[] bytes;
+      var expected = new CBORObject[500];
+      using (var ms = new MemoryStream()) {
+        for (var i = 0; i < expected.Length; ++i) {
+          expected[i] = CBORTestCommon.RandomCBORObject(r);
+          expected[i].WriteTo(ms);
+        }
+        bytes = ms.ToArray();
+      }
+      for (var threads = 1; threads <= 4; ++threads) {
+        CBORObject[] objs = CBORObject.DecodeSequenceFromBytesParallel(
+            bytes,
+            CBOREncodeOptions.Default,
+            threads);
+        Assert.AreEqual(expected.Length, objs.Length);
+        for (var i = 0; i < expected.Length; ++i) {
+          Assert.AreEqual(expected[i], objs[i]);
+        }
+      }
+      Assert.AreEqual(
+        0,
+        CBORObject.DecodeSequenceFromBytesParallel(
+          new byte[0],
+          CBOREncodeOptions.Default,
+          2).Length);
+      // An invalid text string far enough in to be decoded on another
+      // thread
+      using (var ms = new MemoryStream()) {
+        for (var i = 0; i < 1000; ++i) {
+          ms.WriteByte((byte)0x18);
+          ms.WriteByte((byte)i);
+        }
+        ms.WriteByte((byte)0x61);
+        ms.WriteByte((byte)0xff);
+        for (var i = 0; i < 1000; ++i) {
+          ms.WriteByte((byte)0x01);
+        }
+        bytes = ms.ToArray();
+      }
+      try {
+        CBORObject.DecodeSequenceFromBytesParallel(
+          bytes,
+          CBOREncodeOptions.Default,
+          4);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // The last object is incomplete
+      bytes = new byte[] { 0x01, 0x82, 0x02 };
+      try {
+        CBORObject.DecodeSequenceFromBytesParallel(
+          bytes,
+          CBOREncodeOptions.Default,
+          2);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        CBORObject.DecodeSequenceFromBytesParallel(
+          bytes,
+          CBOREncodeOptions.Default,
+          0);
+        Assert.Fail("Should have failed");
+      } catch (ArgumentException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestSequenceReader() {
+      var bytes = new byte[] {
+        0x82, 0x01, 0x02, 0x63, 0x61, 0x62, 0x63, 0x19,
+        0x01, 0x00,
+      };
+      var expected = new CBORObject[] {
+        CBORObject.NewArray().Add(1).Add(2),
+        CBORObject.FromObject("abc"),
+        CBORObject.FromObject(256),
+      };
+      var offsets = new long[] { 0, 3, 7, 10 };
+      var reader = new CBORSequenceReader(new TrickleStream(bytes, 2));
+      var index = 0;
+      foreach (CBORObject obj in reader) {
+        Assert.AreEqual(expected[index], obj);
+        Assert.AreEqual(offsets[index], reader.Offset);
+        Assert.AreEqual(offsets[index + 1], reader.NextOffset);
+        ++index;
+      }
+      Assert.AreEqual(expected.Length, index);
+      Assert.IsNull(reader.Read());
+      // Resume a scan from the offset of the second object
+      using (var ms = new MemoryStream(bytes)) {
+        ms.Position = offsets[1];
+        reader = new CBORSequenceReader(
+          ms,
+          CBOREncodeOptions.Default,
+          offsets[1]);
+        Assert.AreEqual(expected[1], reader.Read());
+        Assert.AreEqual(offsets[1], reader.Offset);
+        Assert.AreEqual(expected[2], reader.Read());
+        Assert.AreEqual(offsets[2], reader.Offset);
+        Assert.IsNull(reader.Read());
+      }
+      // The last object is incomplete
+      reader = new CBORSequenceReader(
+        new TrickleStream(new byte[] { 0x01, 0x82, 0x02 }, 1));
+      Assert.AreEqual(1, reader.Read().AsInt32());
+      try {
+        reader.Read();
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
     [Test]
     public void TestDecodeSequenceFromBytes() {
       CBORObject[] objs;
@@ -1949,6 +2153,67 @@ public void TestAsStringAzureIoT()
       }
     }
 
+    [Test]
+    public void TestDecodeFromBytesOffsetCount() {
+      byte[] bytes = { 0xff, 0xa1, 0x61, 0x61, 0x82, 0x01, 0x02, 0xff };
+      CBORObject cbor = CBORObject.DecodeFromBytes(bytes, 1, 6);
+      Assert.AreEqual(CBORType.Map, cbor.Type);
+      Assert.AreEqual(2, cbor["a"].Count);
+      Assert.AreEqual(CBORObject.FromObject(2), cbor["a"][1]);
+      cbor = CBORObject.DecodeFromBytes(bytes, 5, 1);
+      Assert.AreEqual(CBORObject.FromObject(1), cbor);
+      try {
+        CBORObject.DecodeFromBytes(bytes, 1, 5);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        CBORObject.DecodeFromBytes(bytes, 1, 7);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        CBORObject.DecodeFromBytes(bytes, 4, 5);
+        Assert.Fail("Should have failed");
+      } catch (ArgumentException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        CBORObject.DecodeFromBytes(null, 0, 0);
+        Assert.Fail("Should have failed");
+      } catch (ArgumentNullException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      CBORObject[] objs = CBORObject.DecodeSequenceFromBytes(
+        bytes,
+        4,
+        3,
+        CBOREncodeOptions.Default);
+      Assert.AreEqual(1, objs.Length);
+      Assert.AreEqual(2, objs[0].Count);
+      objs = CBORObject.DecodeSequenceFromBytes(
+        bytes,
+        5,
+        2,
+        CBOREncodeOptions.Default);
+      Assert.AreEqual(2, objs.Length);
+      Assert.AreEqual(CBORObject.FromObject(2), objs[1]);
+    }
+
     [Test]
     public void TestReadSequence() {
       CBORObject[] objs;
@@ -2050,6 +2315,699 @@ public void TestAsStringAzureIoT()
       }
     }
 
+    [Test]
+    public void TestReadIndefiniteByteStringInSequence() {
+      // (_ h'01'), 2
+      var bytes = new byte[] { 0x5f, 0x41, 0x01, 0xff, 0x02 };
+      var expected = new CBORObject[] {
+        CBORObject.FromObject(new byte[] { 0x01 }),
+        CBORObject.FromObject(2),
+      };
+      CBORObject[] objs = CBORObject.DecodeSequenceFromBytes(bytes);
+      Assert.AreEqual(expected.Length, objs.Length);
+      for (var i = 0; i < expected.Length; ++i) {
+        Assert.AreEqual(expected[i], objs[i]);
+      }
+      using (var ms = new MemoryStream(bytes)) {
+        objs = CBORObject.ReadSequence(ms);
+      }
+      Assert.AreEqual(expected.Length, objs.Length);
+      for (var i = 0; i < expected.Length; ++i) {
+        Assert.AreEqual(expected[i], objs[i]);
+      }
+      objs = CBORObject.ReadSequence(new TrickleStream(bytes, 1));
+      Assert.AreEqual(expected.Length, objs.Length);
+      for (var i = 0; i < expected.Length; ++i) {
+        Assert.AreEqual(expected[i], objs[i]);
+      }
+    }
+
+    [Test]
+    public void TestLazyDecode() {
+      var lazyOptions = new CBOREncodeOptions("lazy=true");
+      CBORObject cbor = CBORObject.NewMap()
+        .Add("a", CBORObject.NewArray().Add(1).Add(
+            CBORObject.NewMap().Add("b", "c")))
+        .Add("d", CBORObject.FromObjectAndTag(
+            CBORObject.NewArray().Add(2),
+            1000))
+        .Add("e", CBORObject.NewArray());
+      byte[] bytes = cbor.EncodeToBytes();
+      CBORObject lazy = CBORObject.DecodeFromBytes(bytes, lazyOptions);
+      Assert.AreEqual(cbor, lazy);
+      Assert.AreEqual(0, cbor.CompareTo(lazy));
+      Assert.AreEqual(cbor.GetHashCode(), lazy.GetHashCode());
+      TestCommon.AssertByteArraysEqual(bytes, lazy.EncodeToBytes());
+      lazy = CBORObject.DecodeFromBytes(bytes, lazyOptions);
+      Assert.AreEqual("c", lazy["a"][1]["b"].AsString());
+      Assert.AreEqual(1000, lazy["d"].MostOuterTag.ToInt32Checked());
+      Assert.AreEqual(2, lazy["d"][0].AsInt32());
+      // Changes to lazily decoded arrays and maps are kept
+      lazy["a"].Add(3);
+      Assert.AreEqual(3, lazy["a"].Count);
+      Assert.AreEqual(3, lazy["a"][2].AsInt32());
+      // Errors within a nested item are found when it's accessed
+      bytes = new byte[] { 0x81, 0xa2, 0x01, 0x02, 0x01, 0x03 };
+      lazy = CBORObject.DecodeFromBytes(bytes, lazyOptions);
+      Assert.AreEqual(1, lazy.Count);
+      try {
+        Assert.AreEqual(2, lazy[0].Count);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // Invalid heads are still found when decoding
+      bytes = new byte[] { 0x81, 0x82, 0x01, 0x1c };
+      try {
+        CBORObject.DecodeFromBytes(bytes, lazyOptions);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // Indefinite-length arrays and maps
+      bytes = new byte[] {
+        0x9f, 0x81, 0xbf, 0x61, 0x61, 0x80, 0xff, 0x02, 0xff,
+      };
+      lazy = CBORObject.DecodeFromBytes(bytes, lazyOptions);
+      Assert.AreEqual(0, lazy[0][0]["a"].Count);
+      Assert.AreEqual(2, lazy[1].AsInt32());
+      Assert.AreEqual(CBORObject.DecodeFromBytes(bytes), lazy);
+      // Deeply nested arrays
+      cbor = CBORObject.NewArray();
+      CBORObject inner = cbor;
+      for (var i = 0; i < 200; ++i) {
+        CBORObject next = CBORObject.NewArray();
+        inner.Add(i).Add(next);
+        inner = next;
+      }
+      lazy = CBORObject.DecodeFromBytes(cbor.EncodeToBytes(), lazyOptions);
+      inner = lazy;
+      for (var i = 0; i < 200; ++i) {
+        Assert.AreEqual(i, inner[0].AsInt32());
+        inner = inner[1];
+      }
+      Assert.AreEqual(0, inner.Count);
+      Assert.AreEqual(cbor, lazy);
+    }
+
+    [Test]
+    public void TestShareByteStrings() {
+      var shareOptions = new CBOREncodeOptions("sharebytestrings=true");
+      var blob = new byte[300];
+      for (var i = 0; i < blob.Length; ++i) {
+        blob[i] = unchecked((byte)i);
+      }
+      CBORObject cbor = CBORObject.NewArray().Add(blob).Add(new byte[0])
+        .Add(new byte[] { 1, 2 });
+      byte[] bytes = cbor.EncodeToBytes();
+      CBORObject shared = CBORObject.DecodeFromBytes(bytes, shareOptions);
+      Assert.AreEqual(cbor, shared);
+      Assert.AreEqual(0, cbor.CompareTo(shared));
+      Assert.AreEqual(cbor.GetHashCode(), shared.GetHashCode());
+      TestCommon.AssertByteArraysEqual(bytes, shared.EncodeToBytes());
+      // The byte string refers to the input, after its 4-byte
+      // array and byte string heads
+      ArraySegment<byte> segment = shared[0].GetByteStringSegment();
+      Assert.AreSame(bytes, segment.Array);
+      Assert.AreEqual(4, segment.Offset);
+      Assert.AreEqual(blob.Length, segment.Count);
+      bytes[4] = 0xff;
+      Assert.AreEqual(0xff, shared[0].GetByteStringSegment().Array[4]);
+      // GetByteString copies the portion once, and the copy is used from
+      // then on
+      byte[] bstr = shared[0].GetByteString();
+      Assert.AreEqual(blob.Length, bstr.Length);
+      Assert.AreEqual(0xff, bstr[0]);
+      Assert.AreSame(bstr, shared[0].GetByteString());
+      Assert.AreSame(bstr, shared[0].GetByteStringSegment().Array);
+      Assert.AreEqual(0, shared[1].GetByteStringSegment().Count);
+      // Without the option, the segment covers the whole byte array
+      segment = cbor[0].GetByteStringSegment();
+      Assert.AreSame(cbor[0].GetByteString(), segment.Array);
+      Assert.AreEqual(0, segment.Offset);
+      Assert.AreEqual(blob.Length, segment.Count);
+      try {
+        CBORObject.FromObject(1).GetByteStringSegment();
+        Assert.Fail("Should have failed");
+      } catch (InvalidOperationException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    private static CBORObject FirstKey(CBORObject map) {
+      foreach (CBORObject key in map.Keys) {
+        return key;
+      }
+      return null;
+    }
+
+    [Test]
+    public void TestInternStrings() {
+      var internOptions = new CBOREncodeOptions("internstrings=true");
+      string longKey = "abcdefghijklmnopqrstuvwxyz012345";
+      CBORObject record = CBORObject.NewMap().Add("id", 1);
+      CBORObject longRecord = CBORObject.NewMap().Add(longKey, 1);
+      byte[] bytes;
+      using (var ms = new MemoryStream()) {
+        record.WriteTo(ms);
+        record.WriteTo(ms);
+        longRecord.WriteTo(ms);
+        longRecord.WriteTo(ms);
+        bytes = ms.ToArray();
+      }
+      CBORObject[] objs = CBORObject.DecodeSequenceFromBytes(
+          bytes,
+          internOptions);
+      Assert.AreEqual(4, objs.Length);
+      Assert.AreEqual(record, objs[0]);
+      Assert.AreEqual(longRecord, objs[2]);
+      Assert.AreSame(FirstKey(objs[0]), FirstKey(objs[1]));
+      Assert.AreSame(FirstKey(objs[2]), FirstKey(objs[3]));
+      using (var ms = new MemoryStream(bytes)) {
+        objs = CBORObject.ReadSequence(ms, internOptions);
+      }
+      Assert.AreEqual(4, objs.Length);
+      Assert.AreSame(FirstKey(objs[0]), FirstKey(objs[1]));
+      Assert.AreSame(FirstKey(objs[2]), FirstKey(objs[3]));
+      // Not interned without the option
+      objs = CBORObject.DecodeSequenceFromBytes(bytes);
+      Assert.AreNotSame(FirstKey(objs[0]), FirstKey(objs[1]));
+      // Invalid UTF-8 is still found
+      try {
+        CBORObject.DecodeFromBytes(
+          new byte[] { 0x81, 0x62, 0x41, 0xff },
+          internOptions);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestKeepKeyOrder() {
+      var options = new CBOREncodeOptions("keepkeyorder=true");
+      Assert.IsTrue(options.KeepKeyOrder);
+      Assert.IsTrue(new CBOREncodeOptions(options.ToString()).KeepKeyOrder);
+      Assert.IsFalse(CBOREncodeOptions.Default.KeepKeyOrder);
+      var bytes = new byte[] {
+        0xa3, 0x61, 0x7a, 0x01, 0x61, 0x61, 0x02, 0x61, 0x6d, 0x03,
+      };
+      CBORObject cbor = CBORObject.DecodeFromBytes(bytes, options);
+      Assert.AreEqual(2, cbor["a"].AsInt32Value());
+      Assert.AreEqual(3, cbor["m"].AsInt32Value());
+      Assert.AreEqual("z", FirstKey(cbor).AsString());
+      TestCommon.AssertByteArraysEqual(bytes, cbor.EncodeToBytes());
+      TestCommon.AssertEqualsHashCode(cbor, CBORObject.DecodeFromBytes(bytes));
+      // Without the option, keys are sorted
+      TestCommon.AssertByteArraysEqual(
+        new byte[] {
+          0xa3, 0x61, 0x61, 0x02, 0x61, 0x6d, 0x03, 0x61, 0x7a, 0x01,
+        },
+        CBORObject.DecodeFromBytes(bytes).EncodeToBytes());
+      using (var ms = new MemoryStream(bytes)) {
+        cbor = CBORObject.Read(ms, options);
+      }
+      Assert.AreEqual("z", FirstKey(cbor).AsString());
+      cbor = CBORObject.DecodeFromBytes(new byte[] { 0xa0 }, options)
+        .Add("z", 1).Add("a", 2);
+      Assert.AreEqual("z", FirstKey(cbor).AsString());
+      try {
+        CBORObject.DecodeFromBytes(
+          new byte[] { 0xa2, 0x61, 0x61, 0x01, 0x61, 0x61, 0x02 },
+          options);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      var jsonOptions = new JSONOptions("keepkeyorder=true");
+      Assert.IsTrue(new JSONOptions(jsonOptions.ToString()).KeepKeyOrder);
+      var json = "{\"z\":1,\"a\":{\"y\":2,\"b\":3}}";
+      cbor = CBORObject.FromJSONString(json, jsonOptions);
+      Assert.AreEqual("z", FirstKey(cbor).AsString());
+      Assert.AreEqual("y", FirstKey(cbor["a"]).AsString());
+      Assert.AreEqual(json, cbor.ToJSONString());
+      cbor = CBORObject.FromJSONBytes(
+          DataUtilities.GetUtf8Bytes(json, false),
+          jsonOptions);
+      Assert.AreEqual("z", FirstKey(cbor).AsString());
+      cbor = CBORObject.FromJSONString(json);
+      Assert.AreEqual("a", FirstKey(cbor).AsString());
+    }
+
+    #if !NET20 && !NET40
+    [Test]
+    public void TestReadAsync() {
+      var bytes = new byte[] {
+        0x82, 0x01, 0x02, 0x7f, 0x61, 0x61, 0x61, 0x62, 0xff, 0xd9,
+        0x03, 0xe8, 0x19, 0x01, 0x00,
+      };
+      var expected = new CBORObject[] {
+        CBORObject.NewArray().Add(1).Add(2),
+        CBORObject.FromObject("ab"),
+        CBORObject.FromObjectAndTag(256, 1000),
+      };
+      var positions = new long[] { 3, 9, 15 };
+      System.Threading.CancellationToken token =
+        System.Threading.CancellationToken.None;
+      // Non-seekable streams: no more is read than the object needs
+      for (var maxRead = 1; maxRead <= 4; ++maxRead) {
+        var ts = new TrickleStream(bytes, maxRead);
+        for (var i = 0; i < expected.Length; ++i) {
+          Assert.AreEqual(
+            expected[i],
+            CBORObject.ReadAsync(ts, CBOREncodeOptions.Default, token)
+            .Result);
+          Assert.AreEqual(positions[i], ts.Position);
+        }
+        ts = new TrickleStream(bytes, maxRead);
+        CBORObject[] objs = CBORObject.ReadSequenceAsync(
+            ts,
+            CBOREncodeOptions.Default,
+            token).Result;
+        Assert.AreEqual(expected.Length, objs.Length);
+        for (var i = 0; i < expected.Length; ++i) {
+          Assert.AreEqual(expected[i], objs[i]);
+        }
+      }
+      // Seekable stream: bytes read ahead are handed back
+      using (var ms = new MemoryStream(bytes)) {
+        for (var i = 0; i < expected.Length; ++i) {
+          Assert.AreEqual(expected[i], CBORObject.ReadAsync(ms).Result);
+          Assert.AreEqual(positions[i], ms.Position);
+        }
+        Assert.IsNull(CBORObject.ReadAsync(
+            ms,
+            new CBOREncodeOptions("allowempty=true"),
+            token).Result);
+      }
+      using (var ms = new MemoryStream()) {
+        expected[0].WriteToAsync(ms).Wait();
+        TestCommon.AssertByteArraysEqual(
+          new byte[] { 0x82, 0x01, 0x02 },
+          ms.ToArray());
+      }
+      // Premature end of data
+      try {
+        CBORObject.ReadAsync(new TrickleStream(new byte[] { 0x82, 0x01 }, 1))
+        .Wait();
+        Assert.Fail("Should have failed");
+      } catch (AggregateException ex) {
+        if (!(ex.InnerException is CBORException)) {
+          Assert.Fail(ex.ToString());
+        }
+      }
+    }
+    #endif
+
+    [Test]
+    public void TestReadStreamPosition() {
+      var bytes = new byte[] {
+        0x82, 0x01, 0x02, 0x63, 0x61, 0x62, 0x63, 0x19,
+        0x01, 0x00,
+      };
+      var expected = new long[] { 3, 7, 10 };
+      // Seekable stream: bytes read ahead are handed back
+      using (var ms = new MemoryStream(bytes)) {
+        for (var i = 0; i < expected.Length; ++i) {
+          CBORObject.Read(ms);
+          Assert.AreEqual(expected[i], ms.Position);
+        }
+      }
+      // Non-seekable streams: no more is read than the object needs,
+      // even if the stream returns fewer bytes than requested
+      for (var maxRead = 1; maxRead <= 4; ++maxRead) {
+        var ts = new TrickleStream(bytes, maxRead);
+        Assert.AreEqual(
+          CBORObject.NewArray().Add(1).Add(2),
+          CBORObject.Read(ts));
+        Assert.AreEqual(3, ts.Position);
+        Assert.AreEqual(CBORObject.FromObject("abc"), CBORObject.Read(ts));
+        Assert.AreEqual(7, ts.Position);
+        Assert.AreEqual(CBORObject.FromObject(256), CBORObject.Read(ts));
+        Assert.AreEqual(10, ts.Position);
+        ts = new TrickleStream(bytes, maxRead);
+        Assert.AreEqual(3, CBORObject.ReadSequence(ts).Length);
+      }
+      // Byte string longer than the read-ahead buffer
+      var big = new byte[0x20005];
+      big[0] = 0x5a;
+      big[1] = 0x00;
+      big[2] = 0x02;
+      big[3] = 0x00;
+      big[4] = 0x00;
+      for (var i = 5; i < big.Length; ++i) {
+        big[i] = unchecked((byte)i);
+      }
+      CBORObject[] objs = CBORObject.ReadSequence(
+          new TrickleStream(big, 1000));
+      Assert.AreEqual(1, objs.Length);
+      byte[] bstr = objs[0].GetByteString();
+      Assert.AreEqual(0x20000, bstr.Length);
+      for (var i = 0; i < bstr.Length; ++i) {
+        if (bstr[i] != unchecked((byte)(i + 5))) {
+          Assert.Fail("index " + i);
+        }
+      }
+      var truncated = new byte[big.Length - 1];
+      Array.Copy(big, truncated, truncated.Length);
+      try {
+        CBORObject.Read(new TrickleStream(truncated, 1000));
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestReadIndefiniteByteStringStream() {
+      // (_ h'0102', h'', <0x18000 bytes>, h'03'), from a non-seekable
+      // stream
+      using (var ms = new MemoryStream()) {
+        ms.Write(new byte[] { 0x5f, 0x42, 0x01, 0x02, 0x40 }, 0, 5);
+        ms.Write(new byte[] { 0x5a, 0x00, 0x01, 0x80, 0x00 }, 0, 5);
+        for (var i = 0; i < 0x18000; ++i) {
+          ms.WriteByte(unchecked((byte)i));
+        }
+        ms.Write(new byte[] { 0x41, 0x03, 0xff }, 0, 3);
+        byte[] bytes = ms.ToArray();
+        CBORObject obj = CBORObject.Read(new TrickleStream(bytes, 5000));
+        byte[] bstr = obj.GetByteString();
+        Assert.AreEqual(0x18003, bstr.Length);
+        Assert.AreEqual(1, bstr[0]);
+        Assert.AreEqual(2, bstr[1]);
+        for (var i = 0; i < 0x18000; ++i) {
+          if (bstr[i + 2] != unchecked((byte)i)) {
+            Assert.Fail("index " + i);
+          }
+        }
+        Assert.AreEqual(3, bstr[0x18002]);
+        Assert.AreEqual(obj, CBORObject.DecodeFromBytes(bytes));
+      }
+    }
+
+    [Test]
+    public void TestReadIndefiniteTextString() {
+      // (_ "ab", "", "\u00e0", "cd")
+      var bytes = new byte[] {
+        0x7f, 0x62, 0x61, 0x62, 0x60, 0x62, 0xc3, 0xa0, 0x62, 0x63, 0x64,
+        0xff,
+      };
+      CBORObject obj = CBORObject.DecodeFromBytes(bytes);
+      Assert.AreEqual("ab\u00e0cd", obj.AsString());
+      Assert.AreEqual(CBORObject.FromObject("ab\u00e0cd"), obj);
+      // Written out as a definite-length string
+      TestCommon.AssertByteArraysEqual(
+        new byte[] { 0x66, 0x61, 0x62, 0xc3, 0xa0, 0x63, 0x64 },
+        obj.EncodeToBytes());
+      // Only break code
+      obj = CBORObject.DecodeFromBytes(new byte[] { 0x7f, 0xff });
+      Assert.AreEqual(String.Empty, obj.AsString());
+      // A character split across chunks
+      bytes = new byte[] { 0x7f, 0x61, 0xc3, 0x61, 0xa0, 0xff };
+      try {
+        CBORObject.DecodeFromBytes(bytes);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // A byte string chunk
+      bytes = new byte[] { 0x7f, 0x61, 0x61, 0x41, 0x61, 0xff };
+      try {
+        CBORObject.DecodeFromBytes(bytes);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestTryEncode() {
+      var r = new RandomGenerator();
+      var buffer = new byte[4096];
+      for (var i = 0; i < 500; ++i) {
+        CBORObject obj = CBORTestCommon.RandomCBORObject(r);
+        byte[] expected = obj.EncodeToBytes();
+        if (expected.Length + 3 > buffer.Length) {
+          continue;
+        }
+        int written;
+        Assert.IsTrue(obj.TryEncode(
+            buffer,
+            3,
+            expected.Length,
+            CBOREncodeOptions.Default,
+            out written));
+        Assert.AreEqual(expected.Length, written);
+        for (var j = 0; j < written; ++j) {
+          Assert.AreEqual(expected[j], buffer[j + 3]);
+        }
+        // One byte too few
+        Assert.IsFalse(obj.TryEncode(
+            buffer,
+            3,
+            expected.Length - 1,
+            CBOREncodeOptions.Default,
+            out written));
+        Assert.AreEqual(0, written);
+      }
+      CBORObject cbor = CBORObject.NewArray().Add(1).Add("abc")
+        .Add(CBORObject.FromObjectAndTag(2.5, 1000));
+      var small = new byte[64];
+      int count;
+      Assert.IsTrue(cbor.TryEncode(small, out count));
+      byte[] bytes = cbor.EncodeToBytes();
+      Assert.AreEqual(bytes.Length, count);
+      Assert.AreEqual(cbor, CBORObject.DecodeFromBytes(small, 0, count));
+      // Nothing is written past the given portion
+      for (var i = 0; i < small.Length; ++i) {
+        small[i] = (byte)0xcc;
+      }
+      Assert.IsFalse(cbor.TryEncode(
+          small,
+          1,
+          bytes.Length - 1,
+          CBOREncodeOptions.Default,
+          out count));
+      Assert.AreEqual(0, count);
+      Assert.AreEqual((byte)0xcc, small[0]);
+      for (var i = bytes.Length; i < small.Length; ++i) {
+        Assert.AreEqual((byte)0xcc, small[i]);
+      }
+      try {
+        cbor.TryEncode(small, 60, 5, CBOREncodeOptions.Default, out count);
+        Assert.Fail("Should have failed");
+      } catch (ArgumentException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestEncodeToBytesSameAsWriteTo() {
+      var r = new RandomGenerator();
+      for (var i = 0; i < 500; ++i) {
+        CBORObject obj = CBORTestCommon.RandomCBORObject(r);
+        using (var ms = new MemoryStream()) {
+          obj.WriteTo(ms);
+          TestCommon.AssertByteArraysEqual(ms.ToArray(), obj.EncodeToBytes());
+        }
+      }
+      // Too deeply nested for CalcEncodedSize
+      CBORObject cbor = CBORObject.NewArray();
+      for (var i = 0; i < 1500; ++i) {
+        cbor = CBORObject.NewArray().Add(cbor);
+      }
+      byte[] bytes = cbor.EncodeToBytes();
+      Assert.AreEqual(1501, bytes.Length);
+      // Large byte and text strings
+      cbor = CBORObject.NewArray().Add(new byte[300000])
+        .Add(TestCommon.Repeat("\u00e0", 100000));
+      bytes = cbor.EncodeToBytes();
+      Assert.AreEqual(cbor.CalcEncodedSize(), (long)bytes.Length);
+      Assert.AreEqual(cbor, CBORObject.DecodeFromBytes(bytes));
+      // Maps big enough for EncodeToBytes to find their size first
+      cbor = CBORObject.NewMap();
+      for (var i = 0; i < 100; ++i) {
+        cbor.Add(i, CBORTestCommon.RandomCBORObject(r));
+      }
+      using (var ms = new MemoryStream()) {
+        cbor.WriteTo(ms);
+        TestCommon.AssertByteArraysEqual(ms.ToArray(), cbor.EncodeToBytes());
+      }
+    }
+
+    [Test]
+    public void TestAsImmutable() {
+      CBORObject cbor = CBORObject.NewMap()
+        .Add("a", CBORObject.NewArray().Add(1).Add("x"))
+        .Add("b", CBORObject.FromObjectAndTag(CBORObject.NewMap().Add(2, 3),
+              99));
+      Assert.IsFalse(cbor.IsImmutable);
+      CBORObject frozen = cbor.AsImmutable();
+      Assert.IsTrue(frozen.IsImmutable);
+      Assert.IsTrue(frozen["a"].IsImmutable);
+      Assert.IsTrue(frozen["b"].IsImmutable);
+      Assert.AreEqual(99, frozen["b"].MostInnerTag.ToInt32Checked());
+      Assert.AreSame(frozen, frozen.AsImmutable());
+      TestCommon.AssertEqualsHashCode(cbor, frozen);
+      Assert.AreEqual(cbor.GetHashCode(), frozen.GetHashCode());
+      byte[] bytes = cbor.EncodeToBytes();
+      TestCommon.AssertByteArraysEqual(bytes, frozen.EncodeToBytes());
+      // The kept bytes are used again, and each call gets its own copy
+      byte[] bytes2 = frozen.EncodeToBytes();
+      TestCommon.AssertByteArraysEqual(bytes, bytes2);
+      bytes2[0] = 0;
+      TestCommon.AssertByteArraysEqual(bytes, frozen.EncodeToBytes());
+      TestCommon.AssertByteArraysEqual(
+        CBORObject.NewArray().Add(cbor).EncodeToBytes(),
+        CBORObject.NewArray().Add(frozen).EncodeToBytes());
+      Assert.AreEqual(
+        CBORObject.NewArray().Add(cbor).EncodeToBytes().Length,
+        CBORObject.NewArray().Add(frozen).CalcEncodedSize());
+      // Changing the original doesn't change the copy
+      cbor["a"].Add(5);
+      Assert.AreEqual(2, frozen["a"].Count);
+      try {
+        frozen["a"].Add(5);
+        Assert.Fail("Should have failed");
+      } catch (NotSupportedException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        frozen.Set("c", 1);
+        Assert.Fail("Should have failed");
+      } catch (NotSupportedException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        frozen.Remove(CBORObject.FromObject("a"));
+        Assert.Fail("Should have failed");
+      } catch (NotSupportedException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      Assert.AreEqual(2, frozen.Count);
+      CBORObject ordered = CBORObject.NewOrderedMap().Add("z", 1).Add("a", 2)
+        .AsImmutable();
+      TestCommon.AssertByteArraysEqual(
+        new byte[] { 0xa2, 0x61, 0x7a, 0x01, 0x61, 0x61, 0x02 },
+        ordered.EncodeToBytes());
+      var circular = CBORObject.NewArray();
+      circular.Add(circular);
+      try {
+        circular.AsImmutable();
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestFromEncodedBytes() {
+      // Array whose length isn't in its shortest form, so that it's
+      // written differently once decoded
+      var encoded = new byte[] { 0x98, 0x02, 0x01, 0x62, 0x68, 0x69 };
+      CBORObject cbor = CBORObject.FromEncodedBytes(encoded);
+      Assert.AreEqual(CBORType.Array, cbor.Type);
+      TestCommon.AssertByteArraysEqual(encoded, cbor.EncodeToBytes());
+      CBORObject outer = CBORObject.NewMap().Add("x", cbor);
+      TestCommon.AssertByteArraysEqual(
+        new byte[] {
+          0xa1, 0x61, 0x78, 0x98, 0x02, 0x01, 0x62, 0x68, 0x69,
+        },
+        outer.EncodeToBytes());
+      Assert.AreEqual(9, outer.CalcEncodedSize());
+      using (var ms = new MemoryStream()) {
+        outer.WriteTo(ms);
+        TestCommon.AssertByteArraysEqual(outer.EncodeToBytes(), ms.ToArray());
+      }
+      // Accessing the array decodes it
+      Assert.AreEqual("hi", cbor[1].AsString());
+      TestCommon.AssertByteArraysEqual(
+        new byte[] { 0x82, 0x01, 0x62, 0x68, 0x69 },
+        cbor.EncodeToBytes());
+      cbor = CBORObject.FromEncodedBytes(new byte[] { 0x18, 0x64 });
+      Assert.AreEqual(CBORObject.FromObject(100), cbor);
+      byte[][] invalid = {
+        new byte[0],
+        new byte[] { 0x82, 0x01 },
+        new byte[] { 0x81, 0x01, 0x02 },
+        new byte[] { 0xa1, 0x01 },
+        new byte[] { 0x81, 0x61, 0xff },
+      };
+      foreach (byte[] bytes in invalid) {
+        try {
+          CBORObject.FromEncodedBytes(bytes);
+          Assert.Fail("Should have failed");
+        } catch (CBORException) {
+          // NOTE: Intentionally empty
+        } catch (Exception ex) {
+          Assert.Fail(ex.ToString());
+          throw new InvalidOperationException(String.Empty, ex);
+        }
+      }
+      // Options that change how arrays and maps are encoded cause the
+      // array to be encoded again: [1.5, "a"]
+      encoded = new byte[] { 0x82, 0xf9, 0x3e, 0x00, 0x61, 0x61 };
+      var optionsList = new CBOREncodeOptions[] {
+        new CBOREncodeOptions("float64=true"),
+        new CBOREncodeOptions("useindefencoding=true"),
+      };
+      foreach (CBOREncodeOptions options in optionsList) {
+        byte[] expected = CBORObject.DecodeFromBytes(encoded)
+          .EncodeToBytes(options);
+        cbor = CBORObject.FromEncodedBytes(encoded);
+        TestCommon.AssertByteArraysEqual(expected, cbor.EncodeToBytes(options));
+        cbor = CBORObject.FromEncodedBytes(encoded);
+        using (var ms = new MemoryStream()) {
+          cbor.WriteTo(ms, options);
+          TestCommon.AssertByteArraysEqual(expected, ms.ToArray());
+        }
+      }
+      // 1.5 is written as a 64-bit floating-point number
+      Assert.AreEqual(
+        12,
+        CBORObject.FromEncodedBytes(encoded).EncodeToBytes(
+          optionsList[0]).Length);
+    }
+
     [Test]
     public void TestEncodeFloat64() {
       try {
@@ -3744,6 +4702,115 @@ public sealed class NestedPODClass {
       }
     }
 
+    [Test]
+    public void TestStringKeyLookup() {
+      CBORObject cbor = CBORObject.NewMap().Add("b", 1).Add("aa", 2)
+        .Add("ab", 3).Add("\u00e9", 4).Add("x\ud800\udc00", 5).Add(6, 6);
+      var maps = new CBORObject[] {
+        cbor, CBORObject.DecodeFromBytes(cbor.EncodeToBytes()),
+        CBORObject.DecodeFromBytes(
+          cbor.EncodeToBytes(),
+          new CBOREncodeOptions("keepkeyorder=true")),
+      };
+      string[] keys = { "b", "aa", "ab", "\u00e9", "x\ud800\udc00" };
+      foreach (CBORObject map in maps) {
+        for (var i = 0; i < keys.Length; ++i) {
+          CBORObject expected = CBORObject.FromObject(i + 1);
+          byte[] utf8 = DataUtilities.GetUtf8Bytes(keys[i], false);
+          Assert.AreEqual(expected, map[keys[i]]);
+          Assert.AreEqual(expected, map.GetOrDefault(keys[i], null));
+          Assert.AreEqual(expected, map.GetOrDefaultUtf8(utf8, null));
+        }
+        Assert.IsNull(map["a"]);
+        Assert.IsNull(map.GetOrDefault("ba", null));
+        Assert.IsNull(map.GetOrDefault((string)null, null));
+        Assert.IsNull(map.GetOrDefaultUtf8(new byte[0], null));
+        Assert.IsNull(map.GetOrDefaultUtf8(new byte[] { 0x62, 0x62 }, null));
+        Assert.IsNull(map.GetOrDefaultUtf8(new byte[] { 0xc3 }, null));
+      }
+      Assert.IsNull(CBORObject.NewArray().GetOrDefault("a", null));
+      Assert.IsNull(CBORObject.NewArray().GetOrDefaultUtf8(
+        new byte[] { 0x61 },
+        null));
+      try {
+        cbor.GetOrDefaultUtf8(null, null);
+        Assert.Fail("Should have failed");
+      } catch (ArgumentNullException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // Text strings in UTF-16 and UTF-8 compare the same way
+      foreach (string keyA in keys) {
+        foreach (string keyB in keys) {
+          int cmp = CBORObject.FromObject(keyA).CompareTo(
+              CBORObject.FromObject(keyB));
+          CBORObject decodedB = CBORObject.DecodeFromBytes(
+              CBORObject.FromObject(keyB).EncodeToBytes());
+          Assert.AreEqual(
+            Math.Sign(cmp),
+            Math.Sign(CBORObject.FromObject(keyA).CompareTo(decodedB)),
+            keyA + " " + keyB);
+          Assert.AreEqual(
+            -Math.Sign(cmp),
+            Math.Sign(decodedB.CompareTo(CBORObject.FromObject(keyA))),
+            keyA + " " + keyB);
+        }
+      }
+    }
+
+    [Test]
+    public void TestPrimitiveValues() {
+      long[] longs = {
+        0, 23, 24, 255, 256, -1, -24, -25, -256, -257, Int32.MaxValue,
+        Int32.MinValue, 1L << 32, -(1L << 32), Int64.MaxValue, Int64.MinValue,
+      };
+      foreach (long value in longs) {
+        CBORObject cbor = CBORObject.FromObject(value);
+        Assert.AreEqual(value, cbor.AsInt64Value());
+        Assert.AreEqual(value, CBORObject.FromObjectAndTag(cbor, 999)
+          .AsInt64Value());
+        CBORObject decoded = CBORObject.DecodeFromBytes(cbor.EncodeToBytes());
+        TestCommon.AssertEqualsHashCode(cbor, decoded);
+        Assert.AreEqual(value, decoded.AsInt64Value());
+        Assert.AreEqual(0, cbor.CompareTo(decoded));
+      }
+      Assert.AreSame(CBORObject.FromObject(200), CBORObject.FromObject(200));
+      Assert.AreSame(CBORObject.FromObject(-256), CBORObject.FromObject(-256L));
+      Assert.AreSame(
+        CBORObject.FromObject(100),
+        CBORObject.DecodeFromBytes(new byte[] { 0x18, 0x64 }));
+      Assert.AreEqual(
+        CBORObject.FromObject(-257),
+        CBORObject.DecodeFromBytes(new byte[] { 0x39, 0x01, 0x00 }));
+      Assert.AreNotEqual(CBORObject.FromObject(1), CBORObject.FromObject(2));
+      Assert.IsTrue(CBORObject.FromObject(-2).CompareTo(
+          CBORObject.FromObject(1)) > 0);
+      double[] doubles = { 0.0, -0.0, 1.5, -1e300, Double.PositiveInfinity };
+      foreach (double value in doubles) {
+        CBORObject cbor = CBORObject.FromObject(value);
+        Assert.AreEqual(
+          BitConverter.DoubleToInt64Bits(value),
+          cbor.AsDoubleBits());
+        TestCommon.AssertEqualsHashCode(
+          cbor,
+          CBORObject.DecodeFromBytes(cbor.EncodeToBytes()));
+      }
+      Assert.AreNotEqual(
+        CBORObject.FromObject(0.0),
+        CBORObject.FromObject(-0.0));
+      CBORObject simple = CBORObject.FromSimpleValue(100);
+      Assert.AreEqual(100, simple.SimpleValue);
+      Assert.AreEqual(CBORType.SimpleValue, simple.Type);
+      TestCommon.AssertEqualsHashCode(
+        simple,
+        CBORObject.DecodeFromBytes(new byte[] { 0xf8, 0x64 }));
+      Assert.AreNotEqual(simple, CBORObject.FromSimpleValue(101));
+      Assert.AreNotEqual(simple, CBORObject.FromObject(100));
+      Assert.IsTrue(CBORObject.FromObjectAndTag(true, 5).IsTrue);
+    }
+
     private static void Sink(object obj) {
       Console.WriteLine("Sink for " + obj);
       Assert.Fail();
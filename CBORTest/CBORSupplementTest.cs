@@ -413,6 +413,78 @@ public partial class CBORSupplementTest {
       }
     }
 
+    private static byte[] NestedArrays(int depth) {
+      var bytes = new byte[depth + 1];
+      for (var i = 0; i < depth; ++i) {
+        // Array of length 1
+        bytes[i] = (byte)0x81;
+      }
+      bytes[depth] = 0;
+      return bytes;
+    }
+
+    [Test]
+    public void TestMaxNestingDepth() {
+      var options = new CBOREncodeOptions("maxnestingdepth=10");
+      Assert.AreEqual(10, options.MaxNestingDepth);
+      Assert.AreEqual(500, CBOREncodeOptions.Default.MaxNestingDepth);
+      Assert.AreEqual(
+        10,
+        new CBOREncodeOptions(options.ToString()).MaxNestingDepth);
+      CBORObject.DecodeFromBytes(NestedArrays(10), options);
+      try {
+        CBORObject.DecodeFromBytes(NestedArrays(11), options);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // Tags count toward the nesting depth
+      byte[] bytes = NestedArrays(10);
+      bytes[9] = (byte)0xc6;
+      try {
+        CBORObject.DecodeFromBytes(bytes, options);
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      // Nesting far deeper than the default limit doesn't overflow the
+      // stack while decoding
+      options = new CBOREncodeOptions("maxnestingdepth=100000");
+      CBORObject cbor = CBORObject.DecodeFromBytes(
+          NestedArrays(100000),
+          options);
+      for (var i = 0; i < 100000; ++i) {
+        Assert.AreEqual(CBORType.Array, cbor.Type);
+        cbor = cbor[0];
+      }
+      Assert.AreEqual(0, cbor.AsInt32());
+      using (var ms = new MemoryStream(NestedArrays(100000))) {
+        cbor = CBORObject.Read(ms, options);
+        Assert.AreEqual(CBORType.Array, cbor.Type);
+      }
+      try {
+        CBORObject.DecodeFromBytes(NestedArrays(100001), options);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        new CBOREncodeOptions("maxnestingdepth=-1");
+        Assert.Fail("Should have failed");
+      } catch (ArgumentException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
     [Test]
     public void TestCBOREInteger() {
       EInteger bi = EInteger.FromString("9223372036854775808");
@@ -509,6 +581,52 @@ public partial class CBORSupplementTest {
       Assert.IsTrue(cbor == cbor[1], "objects not the same");
     }
 
+    [Test]
+    public void TestSharedRefsEncodingOrder() {
+      var encodeOptions = new CBOREncodeOptions("resolvereferences=true");
+      // Shareable items are numbered in the order their tags appear, even
+      // in a map whose keys sort in a different order:
+      // {"b": 28(1), "a": 28(2), "c": 29(0)}
+      var bytes = new byte[] {
+        0xa3, 0x61, 0x62, 0xd8, 28, 1, 0x61, 0x61, 0xd8, 28, 2,
+        0x61, 0x63, 0xd8, 29, 0,
+      };
+      CBORObject cbor = CBORObject.DecodeFromBytes(bytes, encodeOptions);
+      Assert.AreEqual(1, cbor["c"].AsInt32());
+      // A shareable array's items are numbered after the array itself,
+      // and references are resolved within tags:
+      // [28([28(1), 2]), 1000(29(1)), 29(0)]
+      bytes = new byte[] {
+        0x83, 0xd8, 28, 0x82, 0xd8, 28, 1, 2, 0xd9, 0x03, 0xe8,
+        0xd8, 29, 1, 0xd8, 29, 0,
+      };
+      cbor = CBORObject.DecodeFromBytes(bytes, encodeOptions);
+      Assert.AreEqual("[1,2]", cbor[0].ToJSONString());
+      Assert.AreEqual(1000, cbor[1].MostOuterTag.ToInt32Checked());
+      Assert.AreEqual(1, cbor[1].UntagOne().AsInt32());
+      Assert.IsTrue(cbor[0] == cbor[2], "objects not the same");
+      // A shareable map can refer to itself
+      bytes = new byte[] { 0xd8, 28, 0xbf, 1, 0xd8, 29, 0, 0xff };
+      cbor = CBORObject.DecodeFromBytes(bytes, encodeOptions);
+      Assert.IsTrue(
+        cbor == cbor[CBORObject.FromObject(1)],
+        "objects not the same");
+      // A shareable item other than an array or map can't refer to
+      // itself: 28(1000([29(0)]))
+      bytes = new byte[] {
+        0xd8, 28, 0xd9, 0x03, 0xe8, 0x81, 0xd8, 29, 0,
+      };
+      try {
+        CBORObject.DecodeFromBytes(bytes, encodeOptions);
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
     [Test]
     public void TestBuiltInTags() {
       // As of 4.0, nearly all tags are no longer converted to native objects; thus,
@@ -867,6 +985,55 @@ public partial class CBORSupplementTest {
       Assert.AreEqual(expected, cbor.ToJSONString());
     }
 
+    [Test]
+    public void TestEncodeStringRefs() {
+      var encodeOptions = new CBOREncodeOptions("stringrefs=true");
+      var decodeOptions = new CBOREncodeOptions("resolvereferences=true");
+      CBORObject cbor = CBORObject.NewArray().Add("abcd").Add("abcd")
+        .Add("bbcd").Add("bbcd").Add(new byte[] { 1, 2, 3 })
+        .Add(new byte[] { 1, 2, 3 }).Add("ab").Add("ab");
+      byte[] expected = {
+        0xd9, 1, 0, 0x88, 0x64, 0x61, 0x62, 0x63, 0x64, 0xd8, 0x19, 0x00,
+        0x64, 0x62, 0x62, 0x63, 0x64, 0xd8, 0x19, 0x01, 0x43, 1, 2, 3,
+        0xd8, 0x19, 0x02, 0x62, 0x61, 0x62, 0x62, 0x61, 0x62,
+      };
+      TestCommon.AssertByteArraysEqual(
+        expected,
+        cbor.EncodeToBytes(encodeOptions));
+      CBORObject decoded = CBORObject.DecodeFromBytes(
+          cbor.EncodeToBytes(encodeOptions),
+          decodeOptions);
+      Assert.IsTrue(decoded.HasMostOuterTag(256));
+      Assert.AreEqual(cbor, decoded.UntagOne());
+      // Map keys repeated in each item of an array
+      cbor = CBORObject.NewArray();
+      for (var i = 0; i < 100; ++i) {
+        cbor.Add(CBORObject.NewMap().Add("identifier", i)
+          .Add("description", "item").Add("value", i * 2));
+      }
+      byte[] bytes = cbor.EncodeToBytes(encodeOptions);
+      Assert.IsTrue(bytes.Length < cbor.EncodeToBytes().Length);
+      decoded = CBORObject.DecodeFromBytes(bytes, decodeOptions);
+      Assert.AreEqual(cbor, decoded.UntagOne());
+      // Writing the decoded object again doesn't add another namespace
+      TestCommon.AssertByteArraysEqual(
+        bytes,
+        decoded.EncodeToBytes(encodeOptions));
+      // Strings in a nested namespace get indices of their own
+      cbor = CBORObject.NewArray().Add("abcd")
+        .Add(CBORObject.FromObjectAndTag(
+          CBORObject.NewArray().Add("abcd").Add("abcd"),
+          256));
+      decoded = CBORObject.DecodeFromBytes(
+          cbor.EncodeToBytes(encodeOptions),
+          decodeOptions);
+      Assert.AreEqual(cbor, decoded.UntagOne());
+      // Strings not in an array or map are written as is
+      TestCommon.AssertByteArraysEqual(
+        CBORObject.FromObject("abcd").EncodeToBytes(),
+        CBORObject.FromObject("abcd").EncodeToBytes(encodeOptions));
+    }
+
     [Test]
     public void TestCPOD() {
       var m = new CPOD();
@@ -0,0 +1,302 @@
+using System;
+using System.Collections.Generic;
+using NUnit.Framework;
+using PeterO;
+using PeterO.Cbor;
+using PeterO.Numbers;
+
+namespace Test {
+  [TestFixture]
+  public class CBORTokenReaderTest {
+    private static void AssertToken(
+      CBORTokenReader reader,
+      CBORTokenType type,
+      int depth) {
+      Assert.IsTrue(reader.Read());
+      Assert.AreEqual(type, reader.TokenType);
+      Assert.AreEqual(depth, reader.Depth);
+    }
+
+    private static void AssertFails(byte[] bytes) {
+      var reader = new CBORTokenReader(bytes);
+      try {
+        while (reader.Read()) {
+        }
+        Assert.Fail("Should have failed");
+      } catch (CBORException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestTokens() {
+      CBORObject cbor = CBORObject.NewMap()
+        .Add("a", CBORObject.NewArray().Add(1).Add(-300).Add(true))
+        .Add("b", CBORObject.FromObjectAndTag(2.5, 1))
+        .Add("c", new byte[] { 1, 2, 3 });
+      byte[] bytes = cbor.EncodeToBytes();
+      var reader = new CBORTokenReader(bytes);
+      Assert.AreEqual(CBORTokenType.None, reader.TokenType);
+      AssertToken(reader, CBORTokenType.StartMap, 0);
+      Assert.AreEqual(3, reader.Count);
+      AssertToken(reader, CBORTokenType.TextString, 1);
+      Assert.AreEqual("a", reader.GetString());
+      AssertToken(reader, CBORTokenType.StartArray, 1);
+      Assert.AreEqual(3, reader.Count);
+      AssertToken(reader, CBORTokenType.Integer, 2);
+      Assert.AreEqual(1, reader.GetInt64());
+      AssertToken(reader, CBORTokenType.Integer, 2);
+      Assert.AreEqual(1, reader.MajorType);
+      Assert.AreEqual(-300, reader.GetInt64());
+      AssertToken(reader, CBORTokenType.SimpleValue, 2);
+      Assert.AreEqual(21, reader.GetSimpleValue());
+      AssertToken(reader, CBORTokenType.EndArray, 1);
+      AssertToken(reader, CBORTokenType.TextString, 1);
+      AssertToken(reader, CBORTokenType.Tag, 1);
+      Assert.AreEqual(1, reader.GetTagInt64());
+      Assert.AreEqual(EInteger.FromInt32(1), reader.GetTag());
+      AssertToken(reader, CBORTokenType.FloatingPoint, 1);
+      Assert.AreEqual(2.5, reader.GetDouble());
+      AssertToken(reader, CBORTokenType.TextString, 1);
+      AssertToken(reader, CBORTokenType.ByteString, 1);
+      Assert.AreEqual(3, reader.StringLength);
+      Assert.AreEqual(1, bytes[reader.StringOffset]);
+      TestCommon.AssertByteArraysEqual(
+        new byte[] { 1, 2, 3 },
+        reader.GetByteString());
+      AssertToken(reader, CBORTokenType.EndMap, 0);
+      Assert.IsFalse(reader.Read());
+      Assert.AreEqual(CBORTokenType.None, reader.TokenType);
+      Assert.AreEqual(bytes.Length, reader.Position);
+    }
+
+    [Test]
+    public void TestIndefiniteLength() {
+      // [_ "ab" (_ h'01', h'02'), {_ 1: 2}]
+      var bytes = new byte[] {
+        0x9f, 0x62, 0x61, 0x62, 0x5f, 0x41, 0x01, 0x41, 0x02, 0xff,
+        0xbf, 0x01, 0x02, 0xff, 0xff,
+      };
+      var reader = new CBORTokenReader(bytes);
+      AssertToken(reader, CBORTokenType.StartArray, 0);
+      Assert.IsTrue(reader.IsIndefiniteLength);
+      Assert.AreEqual(-1, reader.Count);
+      AssertToken(reader, CBORTokenType.TextString, 1);
+      Assert.AreEqual("ab", reader.GetString());
+      AssertToken(reader, CBORTokenType.ByteString, 1);
+      Assert.IsTrue(reader.IsIndefiniteLength);
+      AssertToken(reader, CBORTokenType.ByteString, 2);
+      AssertToken(reader, CBORTokenType.ByteString, 2);
+      AssertToken(reader, CBORTokenType.EndString, 1);
+      AssertToken(reader, CBORTokenType.StartMap, 1);
+      AssertToken(reader, CBORTokenType.Integer, 2);
+      AssertToken(reader, CBORTokenType.Integer, 2);
+      AssertToken(reader, CBORTokenType.EndMap, 1);
+      AssertToken(reader, CBORTokenType.EndArray, 0);
+      Assert.IsFalse(reader.Read());
+    }
+
+    [Test]
+    public void TestSkip() {
+      CBORObject cbor = CBORObject.NewArray()
+        .Add(CBORObject.NewMap().Add("x", CBORObject.NewArray().Add(1)))
+        .Add(CBORObject.FromObjectAndTag(
+            CBORObject.NewArray().Add(2),
+            5))
+        .Add("end");
+      var reader = new CBORTokenReader(cbor.EncodeToBytes());
+      AssertToken(reader, CBORTokenType.StartArray, 0);
+      AssertToken(reader, CBORTokenType.StartMap, 1);
+      reader.Skip();
+      Assert.AreEqual(CBORTokenType.EndMap, reader.TokenType);
+      Assert.AreEqual(1, reader.Depth);
+      AssertToken(reader, CBORTokenType.Tag, 1);
+      reader.Skip();
+      Assert.AreEqual(CBORTokenType.EndArray, reader.TokenType);
+      Assert.AreEqual(1, reader.Depth);
+      AssertToken(reader, CBORTokenType.TextString, 1);
+      reader.Skip();
+      Assert.AreEqual("end", reader.GetString());
+      AssertToken(reader, CBORTokenType.EndArray, 0);
+      Assert.IsFalse(reader.Read());
+    }
+
+    [Test]
+    public void TestSequence() {
+      var reader = new CBORTokenReader(new byte[] { 0xff, 0x01, 0x02, 0xff },
+        1,
+        2);
+      AssertToken(reader, CBORTokenType.Integer, 0);
+      AssertToken(reader, CBORTokenType.Integer, 0);
+      Assert.AreEqual(2, reader.GetInt64());
+      Assert.IsFalse(reader.Read());
+    }
+
+    [Test]
+    public void TestLargeIntegers() {
+      var reader = new CBORTokenReader(new byte[] {
+        0x3b, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff,
+      });
+      AssertToken(reader, CBORTokenType.Integer, 0);
+      Assert.AreEqual(
+        EInteger.FromString("-18446744073709551616"),
+        reader.GetEInteger());
+      try {
+        reader.GetInt64();
+        Assert.Fail("Should have failed");
+      } catch (OverflowException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      try {
+        reader.GetString();
+        Assert.Fail("Should have failed");
+      } catch (InvalidOperationException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+    }
+
+    [Test]
+    public void TestInvalid() {
+      // Premature end of data
+      AssertFails(new byte[] { 0x82, 0x01 });
+      AssertFails(new byte[] { 0x62, 0x61 });
+      AssertFails(new byte[] { 0x19, 0x01 });
+      AssertFails(new byte[] { 0xc1 });
+      AssertFails(new byte[] { 0x9f, 0x01 });
+      // Misplaced break codes
+      AssertFails(new byte[] { 0xff });
+      AssertFails(new byte[] { 0x81, 0xff });
+      AssertFails(new byte[] { 0xbf, 0x01, 0xff });
+      AssertFails(new byte[] { 0x9f, 0xc1, 0xff });
+      // Invalid heads
+      AssertFails(new byte[] { 0x1c });
+      AssertFails(new byte[] { 0x1f });
+      AssertFails(new byte[] { 0xf8, 0x01 });
+      // Invalid chunks of indefinite-length strings
+      AssertFails(new byte[] { 0x5f, 0x61, 0x61, 0xff });
+      AssertFails(new byte[] { 0x5f, 0x5f, 0xff, 0xff });
+      // Invalid UTF-8
+      AssertFails(new byte[] { 0x61, 0x80 });
+      AssertFails(new byte[] { 0x62, 0xc3, 0x28 });
+    }
+
+    private static bool ReadsAll(byte[] bytes, CBOREncodeOptions options) {
+      var reader = new CBORTokenReader(bytes, 0, bytes.Length, options);
+      try {
+        while (reader.Read()) {
+        }
+        return true;
+      } catch (CBORException) {
+        return false;
+      }
+    }
+
+    private static bool Decodes(byte[] bytes, CBOREncodeOptions options) {
+      try {
+        CBORObject.DecodeFromBytes(bytes, options);
+        return true;
+      } catch (CBORException) {
+        return false;
+      }
+    }
+
+    private static bool DecodesFromEncodedBytes(
+      byte[] bytes,
+      CBOREncodeOptions options) {
+      try {
+        CBORObject.FromEncodedBytes(bytes, options);
+        return true;
+      } catch (CBORException) {
+        return false;
+      }
+    }
+
+    private static void Walk(CBORObject obj) {
+      if (obj.Type == CBORType.Array) {
+        for (var i = 0; i < obj.Count; ++i) {
+          Walk(obj[i]);
+        }
+      } else if (obj.Type == CBORType.Map) {
+        foreach (CBORObject key in obj.Keys) {
+          Walk(obj[key]);
+        }
+      }
+    }
+
+    private static bool DecodesLazily(
+      byte[] bytes,
+      CBOREncodeOptions options) {
+      try {
+        Walk(CBORObject.DecodeFromBytes(bytes, options));
+        return true;
+      } catch (CBORException) {
+        return false;
+      }
+    }
+
+    private static void AssertSameNesting(byte[] bytes, int maxDepth) {
+      var options = new CBOREncodeOptions("maxnestingdepth=" + maxDepth);
+      var lazyOptions = new CBOREncodeOptions("lazy=true;maxnestingdepth=" +
+        maxDepth);
+      bool expected = Decodes(bytes, options);
+      string str = TestCommon.ToByteArrayString(bytes);
+      Assert.AreEqual(expected, ReadsAll(bytes, options), str);
+      Assert.AreEqual(expected, DecodesLazily(bytes, lazyOptions), str);
+      if (bytes[0] == 0x81) {
+        Assert.AreEqual(
+          expected,
+          DecodesFromEncodedBytes(bytes, options),
+          str);
+      }
+    }
+
+    [Test]
+    public void TestTagNesting() {
+      // Tags count toward the nesting depth, as when decoding CBOR
+      // objects, and an empty array or map is allowed at the limit
+      var terminals = new byte[] { 0x01, 0x80, 0xa0 };
+      for (var length = 0; length <= 7; ++length) {
+        for (var bits = 0; bits < (1 << length); ++bits) {
+          foreach (byte terminal in terminals) {
+            // Each bit chooses between a tag and a one-item array
+            var bytes = new byte[length + 1];
+            for (var i = 0; i < length; ++i) {
+              bytes[i] = ((bits >> i) & 1) == 0 ? (byte)0xc6 :
+                (byte)0x81;
+            }
+            bytes[length] = terminal;
+            AssertSameNesting(bytes, 4);
+          }
+        }
+      }
+      // [[]] at the limit; the tag in [6([])] takes one more level
+      var options = new CBOREncodeOptions("maxnestingdepth=1");
+      byte[] nested = { 0x81, 0x80 };
+      Assert.IsTrue(Decodes(nested, options));
+      AssertSameNesting(nested, 1);
+      nested = new byte[] { 0x81, 0xc6, 0x80 };
+      Assert.IsFalse(Decodes(nested, options));
+      AssertSameNesting(nested, 1);
+      options = new CBOREncodeOptions("maxnestingdepth=2");
+      Assert.IsTrue(Decodes(nested, options));
+      AssertSameNesting(nested, 2);
+      // A long chain of tags
+      var chain = new byte[1001];
+      for (var i = 0; i < 1000; ++i) {
+        chain[i] = (byte)0xc6;
+      }
+      chain[1000] = 0x01;
+      Assert.IsFalse(ReadsAll(chain, CBOREncodeOptions.Default));
+      Assert.IsFalse(Decodes(chain, CBOREncodeOptions.Default));
+    }
+  }
+}
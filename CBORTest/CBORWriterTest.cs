@@ -0,0 +1,126 @@
+using System;
+using System.IO;
+using NUnit.Framework;
+using PeterO;
+using PeterO.Cbor;
+using PeterO.Numbers;
+
+namespace Test {
+  [TestFixture]
+  public class CBORWriterTest {
+    [Test]
+    public void TestSameAsEncodeToBytes() {
+      CBORObject cbor = CBORObject.NewArray()
+        .Add(1)
+        .Add(-300)
+        .Add("two")
+        .Add(new byte[] { 1, 2, 3 })
+        .Add(2.5)
+        .Add(true)
+        .Add(CBORObject.Null)
+        .Add(CBORObject.FromObjectAndTag(1000, 1))
+        .Add(EInteger.FromString("99999999999999999999"))
+        .Add(CBORObject.NewMap().Add("three", 3).Add("four",
+              CBORObject.NewArray()));
+      using (var ms = new MemoryStream()) {
+        new CBORWriter(ms).WriteStartArray(10)
+        .Write(1)
+        .Write(-300)
+        .Write("two")
+        .Write(new byte[] { 1, 2, 3 })
+        .Write(2.5)
+        .Write(true)
+        .WriteNull()
+        .WriteTag(1)
+        .Write(1000)
+        .Write(EInteger.FromString("99999999999999999999"))
+        .WriteStartMap(2)
+        .Write("three").Write(3)
+        .Write("four").WriteStartArray(0);
+        TestCommon.AssertByteArraysEqual(cbor.EncodeToBytes(), ms.ToArray());
+      }
+    }
+
+    [Test]
+    public void TestIndefiniteLength() {
+      using (var ms = new MemoryStream()) {
+        new CBORWriter(ms).WriteStartMap()
+        .Write("a").WriteStartArray().Write(1).Write(2).WriteEndArray()
+        .Write("b").WriteUndefined()
+        .WriteEndMap();
+        byte[] bytes = ms.ToArray();
+        TestCommon.AssertByteArraysEqual(
+          new byte[] {
+            0xbf, 0x61, 0x61, 0x9f, 0x01, 0x02, 0xff, 0x61, 0x62, 0xf7,
+            0xff,
+          },
+          bytes);
+        CBORObject cbor = CBORObject.DecodeFromBytes(bytes);
+        Assert.AreEqual(2, cbor["a"].Count);
+        Assert.AreEqual(CBORObject.Undefined, cbor["b"]);
+      }
+    }
+
+    [Test]
+    public void TestWriteEncoded() {
+      byte[] encoded = CBORObject.NewArray().Add("x").Add(5).EncodeToBytes();
+      using (var ms = new MemoryStream()) {
+        new CBORWriter(ms).WriteStartArray(2)
+        .WriteEncoded(encoded)
+        .Write(CBORObject.FromObject(7));
+        TestCommon.AssertByteArraysEqual(
+          new byte[] { 0x82, 0x82, 0x61, 0x78, 0x05, 0x07 },
+          ms.ToArray());
+      }
+    }
+
+    [Test]
+    public void TestOptions() {
+      using (var ms = new MemoryStream()) {
+        new CBORWriter(ms).Write(1.5);
+        TestCommon.AssertByteArraysEqual(
+          new byte[] { 0xf9, 0x3e, 0x00 },
+          ms.ToArray());
+      }
+      using (var ms = new MemoryStream()) {
+        new CBORWriter(ms, new CBOREncodeOptions("float64=true")).Write(1.5);
+        Assert.AreEqual(9, ms.ToArray().Length);
+      }
+    }
+
+    [Test]
+    public void TestArguments() {
+      try {
+        new CBORWriter(null);
+        Assert.Fail("Should have failed");
+      } catch (ArgumentNullException) {
+        // NOTE: Intentionally empty
+      } catch (Exception ex) {
+        Assert.Fail(ex.ToString());
+        throw new InvalidOperationException(String.Empty, ex);
+      }
+      using (var ms = new MemoryStream()) {
+        var writer = new CBORWriter(ms);
+        try {
+          writer.WriteStartArray(-1);
+          Assert.Fail("Should have failed");
+        } catch (ArgumentException) {
+          // NOTE: Intentionally empty
+        } catch (Exception ex) {
+          Assert.Fail(ex.ToString());
+          throw new InvalidOperationException(String.Empty, ex);
+        }
+        try {
+          writer.WriteSimpleValue(24);
+          Assert.Fail("Should have failed");
+        } catch (ArgumentException) {
+          // NOTE: Intentionally empty
+        } catch (Exception ex) {
+          Assert.Fail(ex.ToString());
+          throw new InvalidOperationException(String.Empty, ex);
+        }
+        Assert.AreEqual(0, ms.ToArray().Length);
+      }
+    }
+  }
+}
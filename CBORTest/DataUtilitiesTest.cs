@@ -358,6 +358,47 @@ public class DataUtilitiesTest {
       }
     }
 
+    [Test]
+    public void TestUtf8AsciiRuns() {
+      // Strings of basic characters with one other character at each
+      // position, so that it falls in each part of a run
+      string[] others = { "\u0080", "\u00e0", "\u0ae0", "\ud800\udc00" };
+      for (var length = 0; length < 40; ++length) {
+        string ascii = Repeat("a", length);
+        Assert.AreEqual(
+          length,
+          DataUtilities.GetUtf8Bytes(ascii, false).Length);
+        TestUtf8RoundTrip(ascii);
+        foreach (string other in others) {
+          for (var i = 0; i <= length; ++i) {
+            string str = ascii.Substring(0, i) + other + ascii.Substring(i);
+            byte[] bytes = DataUtilities.GetUtf8Bytes(str, false);
+            Assert.AreEqual(
+              DataUtilities.GetUtf8Length(str, false),
+              (long)bytes.Length);
+            Assert.AreEqual(str, DataUtilities.GetUtf8String(bytes, false));
+          }
+        }
+        // An invalid byte at each position
+        for (var i = 0; i < length; ++i) {
+          byte[] bytes = DataUtilities.GetUtf8Bytes(ascii, false);
+          bytes[i] = 0x80;
+          try {
+            DataUtilities.GetUtf8String(bytes, false);
+            Assert.Fail("Should have failed");
+          } catch (ArgumentException) {
+            // NOTE: Intentionally empty
+          } catch (Exception ex) {
+            Assert.Fail(ex.ToString());
+            throw new InvalidOperationException(String.Empty, ex);
+          }
+          Assert.AreEqual(
+            ascii.Substring(0, i) + "\ufffd" + ascii.Substring(i + 1),
+            DataUtilities.GetUtf8String(bytes, true));
+        }
+      }
+    }
+
     [Test]
     public void TestGetUtf8Bytes() {
       try {
@@ -0,0 +1,85 @@
+using System;
+using System.IO;
+
+namespace Test {
+  /// <summary>Read-only, non-seekable stream that returns at most a
+  /// given number of bytes from each read, for testing readers that
+  /// must handle short reads.</summary>
+  public sealed class TrickleStream : Stream {
+    private readonly byte[] bytes;
+    private readonly int maxRead;
+    private int pos;
+
+    public TrickleStream(byte[] bytes, int maxRead) {
+      if (bytes == null) {
+        throw new ArgumentNullException(nameof(bytes));
+      }
+      if (maxRead <= 0) {
+        throw new ArgumentException(
+          "maxRead (" + maxRead + ") is not greater than 0");
+      }
+      this.bytes = bytes;
+      this.maxRead = maxRead;
+    }
+
+    public override long Length {
+      get {
+        throw new NotSupportedException();
+      }
+    }
+
+    public override long Seek(long pos, SeekOrigin origin) {
+      throw new NotSupportedException();
+    }
+
+    public override void SetLength(long len) {
+      throw new NotSupportedException();
+    }
+
+    /// <summary>Gets the number of bytes read from this stream so
+    /// far.</summary>
+    public override long Position {
+      get {
+        return this.pos;
+      }
+
+      set {
+        throw new NotSupportedException();
+      }
+    }
+
+    public override bool CanRead {
+      get {
+        return true;
+      }
+    }
+
+    public override bool CanSeek {
+      get {
+        return false;
+      }
+    }
+
+    public override bool CanWrite {
+      get {
+        return false;
+      }
+    }
+
+    public override int Read(byte[] buffer, int offset, int count) {
+      int n = Math.Min(
+          Math.Min(count, this.maxRead),
+          this.bytes.Length - this.pos);
+      Array.Copy(this.bytes, this.pos, buffer, offset, n);
+      this.pos += n;
+      return n;
+    }
+
+    public override void Flush() {
+    }
+
+    public override void Write(byte[] buffer, int offset, int count) {
+      throw new NotSupportedException();
+    }
+  }
+}